@@ -0,0 +1,132 @@
+package net.sf.scrabble.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.scrabble.local.LatinFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocation of the steady state collect phase, keeping a single result so
+ * nearly every candidate is rejected. Run with the GC profiler to see the
+ * bytes per operation, e.g.
+ * {@code gradle :benchmarks:jmh -Pjmh.args='AllocationBenchmark -prof gc'}.
+ * <p>
+ * The main method checks the same path without JMH: it measures the bytes a
+ * warm solve allocates on the calling thread, less those of a solve without
+ * tokens, and fails if they exceed a budget per admitted combo and per
+ * filtered dictionary lookup, plus one for the result set. Rejected
+ * candidates have no budget, so a single allocation per candidate fails the
+ * check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AllocationBenchmark {
+	// a combo with its word, value array and coordinate, and its heap slot
+	public static final int ADMITTED_BUDGET = 256;
+	// a filter cache key, per change of the fixed letters of the scan
+	public static final int LOOKUP_BUDGET = 128;
+	// the set and sort of a single result, which a solve without tokens lacks
+	public static final int RESULT_BUDGET = 512;
+	public static final int RACK_COUNT = 50;
+	@Param({ "EnglishFactory" })
+	public String factory;
+	@Param({ "OPENING", "MIDGAME", "DENSE" })
+	public BenchmarkCorpus.Position position;
+	@Param({ "AEINRST", "QUIZ_ED" })
+	public String rack;
+	@Param({ "SCAN", "DAWG" })
+	public Board.GeneratorType generator;
+	private Board board;
+	private int[] freqArray;
+	private int jokerCount;
+
+	@Setup
+	public void setUp() throws Exception {
+		LatinFactory latinFactory = BenchmarkCorpus.createFactory(factory);
+		board = BenchmarkCorpus.createPosition(latinFactory, position);
+		board.setGeneratorType(generator);
+		board.setMaxNumberOfResults(1);
+		Alphabet alphabet = latinFactory.createAlphabet();
+		freqArray = new int[alphabet.getSize() + 1];
+		jokerCount = alphabet.getFrequencyAndJoker(rack, freqArray);
+		board.collect(freqArray, jokerCount);
+	}
+
+	@Benchmark
+	public ResultHeap collectCombos() {
+		return board.collect(freqArray, jokerCount);
+	}
+
+	/**
+	 * Checks the allocations of warm solves of random racks on each corpus
+	 * position and generator; exits with 1 if any exceeds its budget.
+	 */
+	public static void main(String[] args) throws Exception {
+		LatinFactory latinFactory = BenchmarkCorpus.createFactory(args.length > 0 ? args[0] : "EnglishFactory");
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		boolean isOk = true;
+		for (BenchmarkCorpus.Position position : BenchmarkCorpus.Position.values()) {
+			Board board = BenchmarkCorpus.createPosition(latinFactory, position);
+			board.setMaxNumberOfResults(1);
+			for (Board.GeneratorType generator : Board.GeneratorType.values()) {
+				board.setGeneratorType(generator);
+				board.prepare();
+				Random random = new Random(BenchmarkCorpus.SEED);
+				long maxExcess = Long.MIN_VALUE;
+				long offeredCount = 0;
+				long admittedCount = 0;
+				for (int i = 0; i < RACK_COUNT; i++) {
+					String tokens = BenchmarkCorpus.drawRack(random);
+					long base = measure(board, "", threadBean, null);
+					SolveMetrics metrics = new SolveMetrics();
+					long bytes = measure(board, tokens, threadBean, metrics) - base;
+					long budget = RESULT_BUDGET + metrics.getAdmittedCount() * ADMITTED_BUDGET
+							+ (metrics.getFilterHitCount() + metrics.getFilterMissCount()) * LOOKUP_BUDGET;
+					maxExcess = Math.max(maxExcess, bytes - budget);
+					offeredCount += metrics.getOfferedCount();
+					admittedCount += metrics.getAdmittedCount();
+				}
+				boolean isWithin = maxExcess <= 0;
+				isOk &= isWithin;
+				System.out.println(String.format("%s %s %s: offered:%d admitted:%d worst bytes over budget:%d",
+						isWithin ? "ok  " : "FAIL", position, generator, Long.valueOf(offeredCount),
+						Long.valueOf(admittedCount), Long.valueOf(maxExcess)));
+			}
+		}
+		if (!isOk) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The bytes the second of two solves of the tokens allocates, the first
+	 * bringing the snapshot, word ranges and filter cache up to date.
+	 */
+	private static long measure(Board board, String tokens, com.sun.management.ThreadMXBean threadBean,
+			SolveMetrics metrics) {
+		board.solve(tokens, new SolveMetrics(), null);
+		SolveMetrics solveMetrics = metrics == null ? new SolveMetrics() : metrics;
+		long threadId = Thread.currentThread().getId();
+		long start = threadBean.getThreadAllocatedBytes(threadId);
+		board.solve(tokens, solveMetrics, null);
+		return threadBean.getThreadAllocatedBytes(threadId) - start;
+	}
+}
@@ -0,0 +1,90 @@
+package net.sf.scrabble.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Solving one position for many racks, as equity evaluation does: a solve per
+ * rack against a single batch solve, with and without an executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BatchBenchmark {
+	private static final String TILES = "AAAAAAAAABBCCDDDDEEEEEEEEEEEEFFGGGHHIIIIIIIIIJKLLLLMMNNNNNNOOOOOOOOPPQRRRRRRSSSSTTTTTTUUUUVVWWXYYZ__";
+	@Param({ "EnglishFactory" })
+	public String factory;
+	@Param({ "MIDGAME" })
+	public BenchmarkCorpus.Position position;
+	@Param({ "SCAN", "DAWG" })
+	public Board.GeneratorType generator;
+	@Param({ "100" })
+	public int rackCount;
+	@Param({ "0", "4" })
+	public int threads;
+	private Board board;
+	private List<String> racks;
+	private ExecutorService executor;
+
+	@Setup
+	public void setUp() throws Exception {
+		board = BenchmarkCorpus.createPosition(BenchmarkCorpus.createFactory(factory), position);
+		board.setGeneratorType(generator);
+		board.setMaxNumberOfResults(10);
+		if (threads > 0) {
+			executor = Executors.newFixedThreadPool(threads);
+			board.setExecutor(executor);
+		}
+		Random random = new Random(1);
+		racks = new ArrayList<String>();
+		for (int i = 0; i < rackCount; i++) {
+			StringBuilder rack = new StringBuilder();
+			for (int j = 0; j < 7; j++) {
+				rack.append(TILES.charAt(random.nextInt(TILES.length())));
+			}
+			racks.add(rack.toString());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	@Benchmark
+	public List<Set<Combo>> solveEach() {
+		List<Set<Combo>> result = new ArrayList<Set<Combo>>();
+		for (String rack : racks) {
+			result.add(board.solve(rack, new SolveMetrics(), null));
+		}
+		return result;
+	}
+
+	@Benchmark
+	public List<Set<Combo>> solveAll() {
+		return board.solveAll(racks, 10);
+	}
+}
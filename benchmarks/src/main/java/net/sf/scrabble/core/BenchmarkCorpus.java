@@ -0,0 +1,97 @@
+package net.sf.scrabble.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Random;
+
+import net.sf.scrabble.local.LatinFactory;
+
+/**
+ * Positions and word lists shared by the benchmarks. Positions are reached by
+ * letting the solver play against itself from a fixed seed, so they only hold
+ * words of the dictionary in use and are the same on every run.
+ * <p>
+ * Word lists are read from the classpath next to the factories, as the
+ * factories themselves do (e.g. src/net/sf/scrabble/local/en.dic).
+ */
+public class BenchmarkCorpus {
+	public static final long SEED = 20130819L;
+	public static final String BAG = "AAAAAAAAABBCCDDDDEEEEEEEEEEEEFFGGGHHIIIIIIIIIJKLLLLMMNNNNNNOOOOOOOOPPQRRRRRRSSSSTTTTTTUUUUVVWWXYYZ__";
+	public static final int RACK_SIZE = 7;
+
+	public enum Position {
+		EMPTY(0), OPENING(1), MIDGAME(8), DENSE(20);
+
+		private final int moveCount;
+
+		private Position(int moveCount) {
+			this.moveCount = moveCount;
+		}
+
+		public int getMoveCount() {
+			return moveCount;
+		}
+	}
+
+	public static LatinFactory createFactory(String name) throws Exception {
+		String className = name.indexOf('.') < 0 ? "net.sf.scrabble.local." + name : name;
+		return (LatinFactory) Class.forName(className).newInstance();
+	}
+
+	/**
+	 * A board of the factory with the given number of moves played on it.
+	 */
+	public static Board createPosition(LatinFactory factory, Position position) throws Exception {
+		checkWordList(factory);
+		Board result = factory.createBoard();
+		int width = factory.getClass().getField("DEFAULT_WIDTH").getInt(null);
+		int height = factory.getClass().getField("DEFAULT_HEIGHT").getInt(null);
+		result.setCode(width / 2, height / 2, LatinFactory.DEFAULT_JOKER_CODE);
+		Random random = new Random(SEED);
+		for (int i = 0; i < position.getMoveCount(); i++) {
+			Iterator<Combo> iterator = result.solve(drawRack(random), new StringBuilder()).iterator();
+			if (iterator.hasNext()) {
+				result.applyCombo(iterator.next());
+			}
+		}
+		return result;
+	}
+
+	public static String drawRack(Random random) {
+		StringBuilder builder = new StringBuilder(RACK_SIZE);
+		for (int i = 0; i < RACK_SIZE; i++) {
+			builder.append(BAG.charAt(random.nextInt(BAG.length())));
+		}
+		return builder.toString();
+	}
+
+	public static String getEncoding(LatinFactory factory) throws Exception {
+		return (String) factory.getClass().getField("DEFAULT_DICTIONARY_ENCODING").get(null);
+	}
+
+	public static byte[] readWordList(LatinFactory factory) throws Exception {
+		InputStream in = checkWordList(factory);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1 << 16];
+			for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static InputStream checkWordList(LatinFactory factory) throws Exception {
+		String file = (String) factory.getClass().getField("DEFAULT_DICTIONARY_FILE").get(null);
+		InputStream result = factory.getClass().getResourceAsStream(file);
+		if (result == null) {
+			throw new IOException("Word list " + file + " not found on the classpath next to "
+					+ factory.getClass().getName());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,54 @@
+package net.sf.scrabble.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.scrabble.local.LatinFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the word list of each locale into a dictionary, from memory so that
+ * disk access is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DictionaryBenchmark {
+	@Param({ "EnglishFactory", "DutchFactory", "GermanFactory", "MaximaFactory" })
+	public String factory;
+	private byte[] content;
+	private String encoding;
+	private Alphabet alphabet;
+	private Scoring scoring;
+
+	@Setup
+	public void setUp() throws Exception {
+		LatinFactory latinFactory = BenchmarkCorpus.createFactory(factory);
+		content = BenchmarkCorpus.readWordList(latinFactory);
+		encoding = BenchmarkCorpus.getEncoding(latinFactory);
+		alphabet = latinFactory.createAlphabet();
+		scoring = latinFactory.createScoring();
+	}
+
+	@Benchmark
+	public Dictionary readFrom() throws IOException {
+		return Dictionary.readFrom(new InputStreamReader(new ByteArrayInputStream(content), encoding), alphabet,
+				scoring);
+	}
+}
@@ -0,0 +1,97 @@
+package net.sf.scrabble.core;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.scrabble.local.LatinFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to solve a short endgame on a midgame position to the end, or as far
+ * as the budget allows.
+ * <p>
+ * The main method reports how full endgames fare with the default move limit:
+ * for random 7-vs-7 racks on the midgame and dense positions, how many
+ * searches complete within the budget, their depth and their time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EndgameBenchmark {
+	public static final long BUDGET_MILLIS = 5000;
+	public static final int ENDGAME_COUNT = 10;
+	@Param({ "EnglishFactory" })
+	public String factory;
+	@Param({ "SCAN", "DAWG" })
+	public Board.GeneratorType generator;
+	@Param({ "AEQ" })
+	public String ownRack;
+	@Param({ "IOU" })
+	public String otherRack;
+	@Param({ "0", "20" })
+	public int moveLimit;
+	private EndgameSolver solver;
+
+	@Setup
+	public void setUp() throws Exception {
+		LatinFactory latinFactory = BenchmarkCorpus.createFactory(factory);
+		Board board = BenchmarkCorpus.createPosition(latinFactory, BenchmarkCorpus.Position.MIDGAME);
+		board.setGeneratorType(generator);
+		solver = new EndgameSolver(board);
+		solver.setMoveLimit(moveLimit);
+	}
+
+	@Benchmark
+	public EndgameSolver.Result solve() {
+		return solver.solve(ownRack, otherRack, 10000);
+	}
+
+	public static void main(String[] args) throws Exception {
+		LatinFactory latinFactory = BenchmarkCorpus.createFactory(args.length > 0 ? args[0] : "EnglishFactory");
+		BenchmarkCorpus.Position[] positions = { BenchmarkCorpus.Position.MIDGAME, BenchmarkCorpus.Position.DENSE };
+		for (BenchmarkCorpus.Position position : positions) {
+			Board board = BenchmarkCorpus.createPosition(latinFactory, position);
+			for (Board.GeneratorType generator : Board.GeneratorType.values()) {
+				board.setGeneratorType(generator);
+				Random random = new Random(BenchmarkCorpus.SEED);
+				int completeCount = 0;
+				int provenCount = 0;
+				int depthSum = 0;
+				long maxMillis = 0;
+				long totalMillis = 0;
+				for (int i = 0; i < ENDGAME_COUNT; i++) {
+					EndgameSolver solver = new EndgameSolver(board);
+					EndgameSolver.Result result = solver.solve(BenchmarkCorpus.drawRack(random),
+							BenchmarkCorpus.drawRack(random), BUDGET_MILLIS);
+					completeCount += result.isComplete() ? 1 : 0;
+					provenCount += result.isProven() ? 1 : 0;
+					depthSum += result.getDepth();
+					long millis = result.getElapsedNanos() / 1000000;
+					maxMillis = Math.max(maxMillis, millis);
+					totalMillis += millis;
+				}
+				System.out.println(String.format(Locale.US,
+						"%s %s: limit:%d complete:%d/%d proven:%d mean depth:%.1f mean ms:%d max ms:%d", position,
+						generator, Integer.valueOf(EndgameSolver.DEFAULT_MOVE_LIMIT), Integer.valueOf(completeCount),
+						Integer.valueOf(ENDGAME_COUNT), Integer.valueOf(provenCount),
+						Double.valueOf((double) depthSum / ENDGAME_COUNT), Long.valueOf(totalMillis / ENDGAME_COUNT),
+						Long.valueOf(maxMillis)));
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package net.sf.scrabble.core;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.scrabble.local.LatinFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The two phases of a solve on their own: refreshing the cell caches (cross
+ * checks, flags and word ranges) of the whole board, and collecting the combos
+ * from up to date caches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PhaseBenchmark {
+	@Param({ "EnglishFactory" })
+	public String factory;
+	@Param({ "OPENING", "MIDGAME", "DENSE" })
+	public BenchmarkCorpus.Position position;
+	@Param({ "AEINRST", "QUIZ_ED" })
+	public String rack;
+	@Param({ "SCAN", "DAWG" })
+	public Board.GeneratorType generator;
+	private Board board;
+	private int[] freqArray;
+	private int jokerCount;
+	private int tokenCount;
+
+	@Setup
+	public void setUp() throws Exception {
+		LatinFactory latinFactory = BenchmarkCorpus.createFactory(factory);
+		board = BenchmarkCorpus.createPosition(latinFactory, position);
+		board.setGeneratorType(generator);
+		Alphabet alphabet = latinFactory.createAlphabet();
+		freqArray = new int[alphabet.getSize() + 1];
+		jokerCount = alphabet.getFrequencyAndJoker(rack, freqArray);
+		tokenCount = freqArray[freqArray.length - 1] + jokerCount;
+		board.getPosition().getWordRanges(tokenCount);
+	}
+
+	@Benchmark
+	public Position.WordRanges refreshCaches() {
+		board.markAllStale();
+		return board.getPosition().getWordRanges(tokenCount);
+	}
+
+	@Benchmark
+	public ResultHeap collectCombos() {
+		return board.collect(freqArray, jokerCount);
+	}
+}
@@ -0,0 +1,107 @@
+package net.sf.scrabble.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.scrabble.local.LatinFactory;
+
+/**
+ * Checks that the engines agree and that pruning against the score bound keeps
+ * the results unchanged. For random racks on each corpus position:
+ * <ul>
+ * <li>a solve for all combos, whose result heap never fills and so never
+ * prunes, gives the same combos with both generators;</li>
+ * <li>the best combos of a solve for a few results equal the head of the
+ * solve for all of them, with each generator;</li>
+ * <li>a solve split over threads equals the sequential one.</li>
+ * </ul>
+ * Exits with 1 on any difference.
+ */
+public class ResultCheck {
+	public static final int RESULT_COUNT = 10;
+	public static final int RACK_COUNT = 20;
+
+	public static void main(String[] args) throws Exception {
+		LatinFactory latinFactory = BenchmarkCorpus.createFactory(args.length > 0 ? args[0] : "EnglishFactory");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime()
+				.availableProcessors()));
+		Board.GeneratorType[] generators = Board.GeneratorType.values();
+		boolean isOk = true;
+		try {
+			for (BenchmarkCorpus.Position position : BenchmarkCorpus.Position.values()) {
+				Board board = BenchmarkCorpus.createPosition(latinFactory, position);
+				Random random = new Random(BenchmarkCorpus.SEED);
+				int engineCount = 0;
+				int[] prunedCount = new int[generators.length];
+				int[] parallelCount = new int[generators.length];
+				for (int i = 0; i < RACK_COUNT; i++) {
+					String tokens = BenchmarkCorpus.drawRack(random);
+					List<Combo> reference = null;
+					for (Board.GeneratorType generator : generators) {
+						board.setGeneratorType(generator);
+						board.setExecutor(null);
+						String label = position + " " + generator + " " + tokens;
+						List<Combo> all = solve(board, tokens, Integer.MAX_VALUE);
+						if (reference == null) {
+							reference = all;
+						} else if (!isSame(reference, all, label + " all")) {
+							engineCount++;
+						}
+						List<Combo> pruned = solve(board, tokens, RESULT_COUNT);
+						if (!isSame(all.subList(0, Math.min(RESULT_COUNT, all.size())), pruned, label + " pruned")) {
+							prunedCount[generator.ordinal()]++;
+						}
+						board.setExecutor(executor);
+						if (!isSame(pruned, solve(board, tokens, RESULT_COUNT), label + " parallel")) {
+							parallelCount[generator.ordinal()]++;
+						}
+					}
+				}
+				board.setExecutor(null);
+				boolean isWithin = engineCount == 0;
+				StringBuilder builder = new StringBuilder();
+				for (Board.GeneratorType generator : generators) {
+					int g = generator.ordinal();
+					isWithin &= prunedCount[g] == 0 && parallelCount[g] == 0;
+					builder.append(String.format(" %s pruned differs:%d parallel differs:%d", generator,
+							Integer.valueOf(prunedCount[g]), Integer.valueOf(parallelCount[g])));
+				}
+				isOk &= isWithin;
+				System.out.println(String.format("%s %s: racks:%d engines differ:%d%s", isWithin ? "ok  " : "FAIL",
+						position, Integer.valueOf(RACK_COUNT), Integer.valueOf(engineCount), builder));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		if (!isOk) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The combos of a solve for the given number of results, best first.
+	 */
+	private static List<Combo> solve(Board board, String tokens, int resultCount) {
+		board.setMaxNumberOfResults(resultCount);
+		return new ArrayList<Combo>(board.solve(tokens, new SolveMetrics(), null));
+	}
+
+	/**
+	 * Whether two results hold the same combos with the same credits in the
+	 * same order; prints the first difference if not.
+	 */
+	private static boolean isSame(List<Combo> expected, List<Combo> actual, String label) {
+		for (int i = 0; i < Math.max(expected.size(), actual.size()); i++) {
+			Combo e = i < expected.size() ? expected.get(i) : null;
+			Combo a = i < actual.size() ? actual.get(i) : null;
+			if (e == null || a == null || !e.equals(a) || e.getCredits() != a.getCredits()) {
+				System.out.println("  " + label + " #" + (i + 1) + ": expected " + e + ", got " + a);
+				return false;
+			}
+		}
+		return true;
+	}
+}
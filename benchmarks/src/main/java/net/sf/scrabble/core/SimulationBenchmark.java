@@ -0,0 +1,58 @@
+package net.sf.scrabble.core;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.scrabble.local.LatinFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Playouts per second of the simulator on a single thread, taking the
+ * candidates of the rack in turn as a simulation does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SimulationBenchmark {
+	@Param({ "EnglishFactory" })
+	public String factory;
+	@Param({ "OPENING", "MIDGAME" })
+	public BenchmarkCorpus.Position position;
+	@Param({ "AEINRST" })
+	public String rack;
+	@Param({ "SCAN", "DAWG" })
+	public Board.GeneratorType generator;
+	@Param({ "2", "4" })
+	public int plies;
+	private Simulator.Playout playout;
+	private int candidate;
+
+	@Setup
+	public void setUp() throws Exception {
+		LatinFactory latinFactory = BenchmarkCorpus.createFactory(factory);
+		Board board = BenchmarkCorpus.createPosition(latinFactory, position);
+		board.setGeneratorType(generator);
+		Simulator simulator = new Simulator(board, latinFactory.createTileBag());
+		simulator.setPlyCount(plies);
+		playout = simulator.createPlayout(rack, BenchmarkCorpus.SEED);
+	}
+
+	@Benchmark
+	public double playout() {
+		candidate = (candidate + 1) % playout.getCandidateCount();
+		return playout.play(candidate);
+	}
+}
@@ -0,0 +1,50 @@
+package net.sf.scrabble.core;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Solving a rack on a fixed position, end to end. The board is solved over and
+ * over, so this measures the steady state in which the cell caches are up to
+ * date and the filtered dictionaries are cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SolveBenchmark {
+	@Param({ "EnglishFactory" })
+	public String factory;
+	@Param({ "EMPTY", "OPENING", "MIDGAME", "DENSE" })
+	public BenchmarkCorpus.Position position;
+	@Param({ "AEINRST", "QUIZ_ED", "__SCRAB", "EEIIOUU" })
+	public String rack;
+	@Param({ "SCAN", "DAWG" })
+	public Board.GeneratorType generator;
+	private Board board;
+
+	@Setup
+	public void setUp() throws Exception {
+		board = BenchmarkCorpus.createPosition(BenchmarkCorpus.createFactory(factory), position);
+		board.setGeneratorType(generator);
+	}
+
+	@Benchmark
+	public Set<Combo> solve() {
+		return board.solve(rack, new StringBuilder());
+	}
+}
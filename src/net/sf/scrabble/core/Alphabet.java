@@ -30,6 +30,14 @@ public class Alphabet {
 		codeList.add(boxed);
 	}
 
+	public int getJokerCode() {
+		return jokerCode;
+	}
+
+	public int getEmptyCode() {
+		return emptyCode;
+	}
+
 	public int getSize() {
 		return codeList.size();
 	}
@@ -81,9 +89,16 @@ public class Alphabet {
 		return builder.toString();
 	}
 
+	public boolean isLegalToken(int code) {
+		return code == jokerCode || code == emptyCode || codeMap.containsKey(Integer.valueOf(code));
+	}
+
 	public void checkLegalTokens(String tokens) {
 		for (int i = 0; i < tokens.length(); i++) {
-			getValueForToken(tokens.codePointAt(i));
+			int code = tokens.codePointAt(i);
+			if (!isLegalToken(code)) {
+				throw new RuntimeException("Token not in alphabet: " + new String(Character.toChars(code)));
+			}
 		}
 	}
 
@@ -3,65 +3,117 @@ package net.sf.scrabble.core;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * The scrabble board as a bidirection set of cells.
+ * <p>
+ * Solves read an immutable snapshot of the position and take their scratch
+ * buffers from a pool, so any number of them can run on one board at the same
+ * time without locking. Only the first solve after a change takes the lock, to
+ * build the next snapshot; changes made during a solve do not affect it.
+ * <p>
+ * Every letter change updates a 64-bit hash of the position, which also covers
+ * the size, alphabet, credits and bonuses of the board. With a
+ * {@link ResultCache} set, solves look up their result by that hash first.
  */
 public class Board {
+	/**
+	 * The move generation engine: a scan over the dictionary words of each
+	 * length, or growing words through the dictionary graph. Cross checks use
+	 * the graph with either.
+	 */
+	public enum GeneratorType {
+		SCAN, DAWG
+	}
+
 	private static final int HOR = Combo.OrientationType.HORIZONTAL.ordinal();
 	private static final int VER = Combo.OrientationType.VERTICAL.ordinal();
 	private static final Cell BORDER_CELL = new Cell(0);
-	private static final int MAX_DICTIONARY_CACHE_IN_REPORT = 30;
 	private int boardWidth;
 	private int boardHeight;
-	private Cell[][][] cellMatrixArray;
+	// letter per column, per row; guarded by the board
+	private int[][] letterMatrix;
+	// the snapshot the next one is built from; guarded by the board
+	private Position lastPosition;
+	// the up to date snapshot, or null after a change
+	private volatile Position position;
 	private Dictionary mainDictionary;
-	private int maxNumberOfResults = 100;
+	private volatile int maxNumberOfResults = 100;
 	private Alphabet alphabet;
 	private Scoring scoring;
+	private volatile GeneratorType generatorType = GeneratorType.SCAN;
+	private volatile ExecutorService executor;
+	private volatile ResultCache resultCache;
+	// the hash of an empty board, and of the letters on it; guarded by the board
+	private final long localeHash;
+	private long positionHash;
+	// per orientation, the columns whose credit caches and the lines whose
+	// flags are out of date; guarded by the board
+	private boolean[][] staleColumnArray = new boolean[2][];
+	private boolean[][] staleLineArray = new boolean[2][];
+	private final Queue<Scratch> scratchPool = new ConcurrentLinkedQueue<Scratch>();
 
-	private class BoardIterator implements Iterator<Coord>, Iterable<Coord> {
-		private Coord coord = new Coord(0, 0);
-		private int width;
-		private int height;
-
-		BoardIterator() {
-			this(boardWidth, boardHeight);
-		}
+	/**
+	 * Turns what the generators find into combos for a visitor, until it or an
+	 * interrupt says stop.
+	 */
+	private static class VisitorSink implements ComboSink {
+		private static final Combo.OrientationType[] ORIENTATIONS = Combo.OrientationType.values();
+		private ComboVisitor visitor;
+		private boolean stopped;
 
-		BoardIterator(int width, int height) {
-			this.width = width;
-			this.height = height;
+		VisitorSink(ComboVisitor visitor) {
+			this.visitor = visitor;
 		}
 
-		public Iterator<Coord> iterator() {
-			return this;
+		public boolean add(int credit, int orientation, int position, int line, int[] valueArray, int length,
+				int plainCredit) {
+			if (isDone()) {
+				return false;
+			}
+			boolean horizontal = orientation == HOR;
+			Word word = new Word(Arrays.copyOf(valueArray, length), plainCredit);
+			Coord coord = new Coord(horizontal ? position : line, horizontal ? line : position);
+			stopped = !visitor.visit(new Combo(word, coord, credit, ORIENTATIONS[orientation]));
+			return true;
 		}
 
-		public boolean hasNext() {
-			return coord.y < height;
+		public int getThreshold() {
+			return Integer.MIN_VALUE;
 		}
 
-		public Coord next() {
-			Coord result = new Coord(coord);
-			coord.x++;
-			if (coord.x >= width) {
-				coord.x = 0;
-				coord.y++;
+		public boolean isDone() {
+			if (!stopped && Thread.currentThread().isInterrupted()) {
+				stopped = true;
 			}
-			return result;
+			return stopped;
 		}
+	}
 
-		public void remove() {
-			throw new UnsupportedOperationException();
-		}
+	/**
+	 * The buffers of a single collection, pooled so that concurrent solves each
+	 * have their own without allocating them every time.
+	 */
+	private class Scratch {
+		final int[] valueArray = new int[Math.max(boardWidth, boardHeight)];
+		final int[] frequencySumArray = new int[alphabet.getSize() + 1];
+		final ScoreBound bound = new ScoreBound(scoring, Math.max(boardWidth, boardHeight));
+		// per start cell, the positions with cross checks and the empty cells up to each length
+		final int[] constrainedArray = new int[Math.max(boardWidth, boardHeight)];
+		final int[] emptyCountArray = new int[Math.max(boardWidth, boardHeight) + 1];
+		MoveGenerator generator;
 	}
 
 	public Board(int width, int height, Dictionary dictionary, Alphabet alphabet, Scoring scoring) {
@@ -70,146 +122,705 @@ public class Board {
 		boardWidth = width;
 		boardHeight = height;
 		mainDictionary = dictionary;
-		cellMatrixArray = new Cell[2][][];
+		localeHash = getLocaleHash(width, height, alphabet, scoring);
+		positionHash = localeHash;
+		letterMatrix = new int[width][height];
+		Cell[][][] cellMatrixArray = new Cell[2][][];
 		cellMatrixArray[HOR] = new Cell[width][height];
 		cellMatrixArray[VER] = new Cell[height][width];
-		clear();
-		for (Coord coord : new BoardIterator()) {
-			int bonus = scoring.getBonusFor(coord);
-			cellMatrixArray[HOR][coord.x][coord.y].bonus = bonus;
-			cellMatrixArray[VER][coord.y][coord.x].bonus = bonus;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int bonus = scoring.getBonusFor(x, y);
+				letterMatrix[x][y] = Alphabet.EMPTY_VALUE;
+				cellMatrixArray[HOR][x][y] = new Cell(alphabet.getSize());
+				cellMatrixArray[VER][y][x] = new Cell(alphabet.getSize());
+				cellMatrixArray[HOR][x][y].bonus = bonus;
+				cellMatrixArray[VER][y][x].bonus = bonus;
+			}
 		}
+		int[][][] anchorArray = new int[2][][];
+		anchorArray[HOR] = new int[height][0];
+		anchorArray[VER] = new int[width][0];
+		long[][][] maskArray = new long[2][][];
+		maskArray[HOR] = new long[height][width];
+		maskArray[VER] = new long[width][height];
+		lastPosition = new Position(cellMatrixArray, anchorArray, maskArray, positionHash);
+		staleColumnArray[HOR] = new boolean[width];
+		staleColumnArray[VER] = new boolean[height];
+		staleLineArray[HOR] = new boolean[height];
+		staleLineArray[VER] = new boolean[width];
+		markAllStale();
 	}
 
-	public int getCode(int x, int y) {
-		return alphabet.getTokenForValue(getCell(x, y, cellMatrixArray[HOR]).letter);
+	public synchronized int getCode(int x, int y) {
+		if (x < 0 || x >= boardWidth || y < 0 || y >= boardHeight) {
+			return alphabet.getTokenForValue(BORDER_CELL.letter);
+		}
+		return alphabet.getTokenForValue(letterMatrix[x][y]);
 	}
 
 	public int getBonus(int x, int y) {
-		return getCell(x, y, cellMatrixArray[HOR]).bonus;
+		if (x < 0 || x >= boardWidth || y < 0 || y >= boardHeight) {
+			return BORDER_CELL.bonus;
+		}
+		return scoring.getBonusFor(x, y);
 	}
 
 	public void setCode(int x, int y, int code) {
 		setValue(x, y, alphabet.getValueForToken(code));
 	}
 
-	private void setValue(int x, int y, int value) {
-		getCell(x, y, cellMatrixArray[HOR]).letter = value;
-		getCell(y, x, cellMatrixArray[VER]).letter = value;
+	private synchronized void setValue(int x, int y, int value) {
+		if (letterMatrix[x][y] == value) {
+			return;
+		}
+		positionHash ^= getCellKey(x, y, letterMatrix[x][y]) ^ getCellKey(x, y, value);
+		letterMatrix[x][y] = value;
+		markStale(HOR, x, y);
+		markStale(VER, y, x);
+		position = null;
+	}
+
+	/**
+	 * The hash of the letters on the board and what they are read against;
+	 * boards of the same locale with the same letters have the same hash.
+	 */
+	public synchronized long getPositionHash() {
+		return positionHash;
+	}
+
+	/**
+	 * What a letter value at x,y adds to the position hash; an empty cell adds
+	 * nothing.
+	 */
+	private long getCellKey(int x, int y, int value) {
+		if (value == Alphabet.EMPTY_VALUE) {
+			return 0;
+		}
+		// the joker value is the lowest, so the last field is never negative
+		return mix(localeHash ^ ((long) x << 42 | (long) y << 21 | value - Alphabet.JOKER_VALUE));
+	}
+
+	private static long getLocaleHash(int width, int height, Alphabet alphabet, Scoring scoring) {
+		long result = mix((long) width << 32 | height);
+		result = mix(result ^ ((long) alphabet.getJokerCode() << 32 | alphabet.getEmptyCode()));
+		for (int v = 0; v < alphabet.getSize(); v++) {
+			result = mix(result ^ ((long) alphabet.getCodeForValue(v) << 32 | scoring.getCreditFor(v) & 0xffffffffL));
+		}
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				result = mix(result ^ scoring.getBonusFor(x, y));
+			}
+		}
+		return mix(result ^ scoring.getBonusForUsingAll());
+	}
+
+	/**
+	 * The finalizer of the SplitMix64 generator: a bijection that spreads every
+	 * input bit over the output.
+	 */
+	private static long mix(long z) {
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		return z ^ z >>> 31;
+	}
+
+	/**
+	 * A letter change at x,y (in orientation coordinates) affects the cross
+	 * checks of its column and the flags of its own and both neighbouring
+	 * lines.
+	 */
+	private void markStale(int orientation, int x, int y) {
+		boolean[] staleColumns = staleColumnArray[orientation];
+		boolean[] staleLines = staleLineArray[orientation];
+		if (x >= 0 && x < staleColumns.length) {
+			staleColumns[x] = true;
+		}
+		for (int i = Math.max(y - 1, 0); i <= y + 1 && i < staleLines.length; i++) {
+			staleLines[i] = true;
+		}
+	}
+
+	/**
+	 * Marks all cell caches out of date, as if every cell had changed.
+	 */
+	synchronized void markAllStale() {
+		for (int o = 0; o < 2; o++) {
+			Arrays.fill(staleColumnArray[o], true);
+			Arrays.fill(staleLineArray[o], true);
+		}
+		position = null;
+	}
+
+	/**
+	 * Places the letters of a combo on the board.
+	 */
+	public synchronized void applyCombo(Combo combo) {
+		int dx = combo.isHorizontal() ? 1 : 0;
+		int dy = 1 - dx;
+		int[] array = combo.word.valueArray;
+		for (int i = 0; i < array.length; i++) {
+			setValue(combo.coord.x + i * dx, combo.coord.y + i * dy, array[i]);
+		}
 	}
 
 	public String info(Coord coord) {
-		return "H: " + cellMatrixArray[HOR][coord.x][coord.y].toString() + "\nV: "
-				+ cellMatrixArray[VER][coord.y][coord.x].toString();
+		Position snapshot = getPosition();
+		return "H: " + snapshot.getCellMatrix(HOR)[coord.x][coord.y].toString() + "\nV: "
+				+ snapshot.getCellMatrix(VER)[coord.y][coord.x].toString();
 	}
 
-	public void clear() {
-		for (Coord coord : new BoardIterator()) {
-			cellMatrixArray[HOR][coord.x][coord.y] = new Cell(alphabet.getSize());
-			cellMatrixArray[VER][coord.y][coord.x] = new Cell(alphabet.getSize());
+	public synchronized void clear() {
+		for (int y = 0; y < boardHeight; y++) {
+			for (int x = 0; x < boardWidth; x++) {
+				setValue(x, y, Alphabet.EMPTY_VALUE);
+			}
 		}
 	}
 
 	public Set<Combo> solve(String tokens, StringBuilder report) {
-		ResultSet result = new ResultSet(maxNumberOfResults);
-		alphabet.checkLegalTokens(tokens);
+		return solve(tokens, report, null);
+	}
+
+	/**
+	 * Solves with a monitor, if not null, that sees the best combos so far
+	 * after each line and can cancel the solve.
+	 */
+	public Set<Combo> solve(String tokens, StringBuilder report, SolveMonitor monitor) {
+		SolveMetrics metrics = new SolveMetrics();
+		Set<Combo> result = solve(tokens, metrics, monitor);
+		int[] freqArray = new int[alphabet.getSize() + 1];
+		int jokerCount = alphabet.getFrequencyAndJoker(tokens, freqArray);
 		report.append("----------------------------------------------------------------\n");
 		report.append("solving: " + tokens + "\n");
+		report.append("frequency: " + alphabet.frequencyToString(freqArray) + "  jokers: " + jokerCount
+				+ "  total: " + (freqArray[freqArray.length - 1] + jokerCount) + "\n");
+		report.append("using: " + mainDictionary + "  generator: " + generatorType + "\n");
+		report.append(metrics + "\n");
+		return result;
+	}
+
+	/**
+	 * Solves without a report, filling in the metrics of the solve instead and
+	 * adding them to the process-wide {@link SolverStats}. Without a monitor,
+	 * the result comes from the result cache if it has it, and goes into it
+	 * otherwise.
+	 */
+	public Set<Combo> solve(String tokens, SolveMetrics metrics, SolveMonitor monitor) {
+		long start = System.nanoTime();
+		alphabet.checkLegalTokens(tokens);
 		int[] freqArray = new int[alphabet.getSize() + 1];
 		int jokerCount = alphabet.getFrequencyAndJoker(tokens, freqArray);
-		String frequencyString = alphabet.frequencyToString(freqArray);
-		report.append("frequency: " + frequencyString + "  jokers: " + jokerCount + "  total: "
-				+ (freqArray[freqArray.length - 1] + jokerCount) + "\n");
-		report.append("using: " + mainDictionary + "\n");
-		Dictionary dictionary = mainDictionary.createFilteredDictionary(freqArray, jokerCount);
-		Map<String, Dictionary> dictionaryCacheMap = new HashMap<String, Dictionary>();
-		dictionaryCacheMap.put(frequencyString, dictionary);
-		ResultSet verticalResultSet = new ResultSet(maxNumberOfResults);
-		solveSingleOrientation(freqArray, jokerCount, dictionaryCacheMap, cellMatrixArray[VER], verticalResultSet);
-		for (Combo combo : verticalResultSet) {
-			result.add(combo.getMirror());
-		}
-		solveSingleOrientation(freqArray, jokerCount, dictionaryCacheMap, cellMatrixArray[HOR], result);
-		report.append("dictionary-cache size: " + dictionaryCacheMap.size() + "\n");
-		if (dictionaryCacheMap.size() < MAX_DICTIONARY_CACHE_IN_REPORT) {
-			List<String> keyList = new ArrayList<String>(dictionaryCacheMap.keySet());
-			Collections.sort(keyList, new Comparator<String>() {
-				public int compare(String a, String b) {
-					int lengthDiff = a.length() - b.length();
-					if (lengthDiff != 0) {
-						return lengthDiff;
+		int capacity = maxNumberOfResults;
+		ResultCache cache = monitor == null ? resultCache : null;
+		if (cache != null) {
+			Set<Combo> cached = cache.get(new ResultCache.Key(mainDictionary, getPositionHash(), freqArray,
+					jokerCount, capacity, cache.getStaleQueue()));
+			if (cached != null) {
+				Set<Combo> comboSet = new LinkedHashSet<Combo>(cached);
+				metrics.resultCacheHitCount++;
+				metrics.resultCount = comboSet.size();
+				metrics.totalNanos = System.nanoTime() - start;
+				SolverStats.getInstance().record(metrics);
+				return comboSet;
+			}
+			metrics.resultCacheMissCount++;
+		}
+		Position snapshot = getPosition(metrics);
+		ResultHeap result = collect(snapshot, freqArray, jokerCount, capacity, executor, monitor, metrics);
+		Set<Combo> comboSet = result.toSet();
+		if (cache != null) {
+			// keyed by the snapshot solved, which may be newer than the lookup
+			cache.put(new ResultCache.Key(mainDictionary, snapshot.getHash(), freqArray, jokerCount, capacity,
+					cache.getStaleQueue()), new LinkedHashSet<Combo>(comboSet));
+		}
+		metrics.resultCount = comboSet.size();
+		metrics.totalNanos = System.nanoTime() - start;
+		SolverStats.getInstance().record(metrics);
+		return comboSet;
+	}
+
+	/**
+	 * Solves the current position for each of the racks, keeping the best k
+	 * combos of each, in the order of the racks. The position is analysed once
+	 * for all of them, and the word ranges once per number of tokens. Racks
+	 * with the same tokens in any order are solved once and share their
+	 * result; the others are solved in parallel on the executor, if there is
+	 * one. Each distinct rack counts as a solve in the {@link SolverStats}.
+	 */
+	public List<Set<Combo>> solveAll(List<String> racks, final int k) {
+		// the distinct racks, and for each rack the index of its distinct one
+		Map<String, Integer> indexMap = new HashMap<String, Integer>();
+		int[] indexArray = new int[racks.size()];
+		List<int[]> freqList = new ArrayList<int[]>();
+		List<Integer> jokerList = new ArrayList<Integer>();
+		for (int i = 0; i < racks.size(); i++) {
+			String tokens = racks.get(i);
+			alphabet.checkLegalTokens(tokens);
+			int[] freqArray = new int[alphabet.getSize() + 1];
+			int jokerCount = alphabet.getFrequencyAndJoker(tokens, freqArray);
+			String key = Arrays.toString(freqArray) + jokerCount;
+			Integer index = indexMap.get(key);
+			if (index == null) {
+				index = Integer.valueOf(freqList.size());
+				indexMap.put(key, index);
+				freqList.add(freqArray);
+				jokerList.add(Integer.valueOf(jokerCount));
+			}
+			indexArray[i] = index.intValue();
+		}
+		List<Set<Combo>> distinctList = solveDistinct(freqList, jokerList, k);
+		List<Set<Combo>> result = new ArrayList<Set<Combo>>(racks.size());
+		for (int i = 0; i < indexArray.length; i++) {
+			result.add(distinctList.get(indexArray[i]));
+		}
+		return result;
+	}
+
+	private List<Set<Combo>> solveDistinct(List<int[]> freqList, List<Integer> jokerList, final int k) {
+		final int rackCount = freqList.size();
+		final int[][] freqMatrix = freqList.toArray(new int[rackCount][]);
+		final int[] jokerArray = new int[rackCount];
+		for (int i = 0; i < rackCount; i++) {
+			jokerArray[i] = jokerList.get(i).intValue();
+		}
+		SolveMetrics positionMetrics = new SolveMetrics();
+		long start = System.nanoTime();
+		final Position snapshot = getPosition(positionMetrics);
+		positionMetrics.totalNanos = System.nanoTime() - start;
+		List<Set<Combo>> result = new ArrayList<Set<Combo>>(rackCount);
+		ExecutorService service = executor;
+		if (service == null || rackCount < 2) {
+			for (int i = 0; i < rackCount; i++) {
+				result.add(solveRack(snapshot, freqMatrix[i], jokerArray[i], k, i == 0 ? positionMetrics : null));
+			}
+			return result;
+		}
+		// build before the tasks start rather than in the first of them
+		prepare();
+		List<Future<Set<Combo>>> futureList = new ArrayList<Future<Set<Combo>>>(rackCount);
+		for (int i = 0; i < rackCount; i++) {
+			final int rack = i;
+			final SolveMetrics extra = i == 0 ? positionMetrics : null;
+			futureList.add(service.submit(new Callable<Set<Combo>>() {
+				public Set<Combo> call() {
+					return solveRack(snapshot, freqMatrix[rack], jokerArray[rack], k, extra);
+				}
+			}));
+		}
+		try {
+			for (Future<Set<Combo>> future : futureList) {
+				result.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			for (Future<Set<Combo>> future : futureList) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while solving", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unable to solve", e.getCause());
+		}
+		return result;
+	}
+
+	/**
+	 * Solves a single rack of a batch on the calling thread, adding the cost of
+	 * the position analysis to the metrics of the rack that carries it.
+	 */
+	private Set<Combo> solveRack(Position snapshot, int[] freqArray, int jokerCount, int k,
+			SolveMetrics positionMetrics) {
+		long start = System.nanoTime();
+		SolveMetrics metrics = new SolveMetrics();
+		ResultHeap heap = collect(snapshot, freqArray, jokerCount, k, null, null, metrics);
+		Set<Combo> comboSet = heap.toSet();
+		metrics.resultCount = comboSet.size();
+		metrics.totalNanos = System.nanoTime() - start;
+		if (positionMetrics != null) {
+			metrics.add(positionMetrics);
+			metrics.totalNanos += positionMetrics.totalNanos;
+		}
+		SolverStats.getInstance().record(metrics);
+		return comboSet;
+	}
+
+	/**
+	 * Generates the combos for the tokens on the calling thread and hands each
+	 * to the visitor as soon as it is found, in no particular order and without
+	 * ranking or keeping them. Generation stops once the visitor returns false
+	 * or the thread is interrupted, so a visitor that only needs a few combos
+	 * does not pay for the rest of the board.
+	 *
+	 * @return false if generation stopped early
+	 */
+	public boolean generate(String tokens, ComboVisitor visitor) {
+		alphabet.checkLegalTokens(tokens);
+		int[] freqArray = new int[alphabet.getSize() + 1];
+		int jokerCount = alphabet.getFrequencyAndJoker(tokens, freqArray);
+		Position snapshot = getPosition();
+		Position.WordRanges ranges = snapshot.getWordRanges(freqArray[freqArray.length - 1] + jokerCount);
+		GeneratorType type = generatorType;
+		VisitorSink sink = new VisitorSink(visitor);
+		SolveMetrics metrics = new SolveMetrics();
+		collectOrientation(snapshot, ranges, type, freqArray, jokerCount, VER, 0, boardWidth, sink, metrics);
+		if (!sink.isDone()) {
+			collectOrientation(snapshot, ranges, type, freqArray, jokerCount, HOR, 0, boardHeight, sink, metrics);
+		}
+		return !sink.isDone();
+	}
+
+	/**
+	 * Builds the dictionary graph the cross checks use and the structures the
+	 * generator needs, which otherwise happens during the first solve.
+	 */
+	public void prepare() {
+		mainDictionary.getDawg();
+		if (generatorType == GeneratorType.SCAN) {
+			mainDictionary.getSignatureIndex();
+		}
+	}
+
+	/**
+	 * The snapshot of the current position, built from the previous one if
+	 * letters have changed since; the first phase of a solve.
+	 */
+	Position getPosition() {
+		return getPosition(null);
+	}
+
+	/**
+	 * As above, adding the time spent on the cell caches to the metrics, if
+	 * not null.
+	 */
+	private Position getPosition(SolveMetrics metrics) {
+		Position result = position;
+		if (result == null) {
+			synchronized (this) {
+				if (position == null) {
+					position = createPosition(metrics);
+				}
+				result = position;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the best combos for the tokens on the current position; the
+	 * second phase of a solve.
+	 */
+	ResultHeap collect(int[] freqArray, int jokerCount) {
+		return collect(getPosition(), freqArray, jokerCount, maxNumberOfResults, executor, null, new SolveMetrics());
+	}
+
+	private ResultHeap collect(Position snapshot, int[] freqArray, int jokerCount, int capacity,
+			ExecutorService service, SolveMonitor monitor, SolveMetrics metrics) {
+		long start = System.nanoTime();
+		Position.WordRanges ranges = snapshot.getWordRanges(freqArray[freqArray.length - 1] + jokerCount);
+		long rangeEnd = System.nanoTime();
+		metrics.wordRangeNanos += rangeEnd - start;
+		GeneratorType type = generatorType;
+		ResultHeap result = new ResultHeap(capacity);
+		if (service != null) {
+			collectInParallel(snapshot, ranges, type, service, freqArray, jokerCount, monitor, result, metrics);
+		} else if (monitor == null) {
+			collectOrientation(snapshot, ranges, type, freqArray, jokerCount, VER, 0, boardWidth, result, metrics);
+			collectOrientation(snapshot, ranges, type, freqArray, jokerCount, HOR, 0, boardHeight, result, metrics);
+		} else {
+			int lineCount = boardWidth + boardHeight;
+			for (int line = 0; line < lineCount; line++) {
+				checkCancelled(monitor);
+				int orientation = line < boardWidth ? VER : HOR;
+				int fromLine = line < boardWidth ? line : line - boardWidth;
+				collectOrientation(snapshot, ranges, type, freqArray, jokerCount, orientation, fromLine,
+						fromLine + 1, result, metrics);
+				monitor.lineDone(line + 1, lineCount, result.toSet());
+			}
+		}
+		metrics.collectNanos += System.nanoTime() - rangeEnd;
+		return result;
+	}
+
+	private static void checkCancelled(SolveMonitor monitor) {
+		if (monitor != null && monitor.isCancelled()) {
+			throw new CancellationException("Solve cancelled");
+		}
+	}
+
+	/**
+	 * Splits the collection into a task per line of each orientation, each with
+	 * its own result heap, and merges them. The result order is total, so the
+	 * merged result equals the sequential one.
+	 */
+	private void collectInParallel(final Position snapshot, final Position.WordRanges ranges,
+			final GeneratorType type, ExecutorService service, final int[] freqArray, final int jokerCount,
+			SolveMonitor monitor, ResultHeap result, SolveMetrics metrics) {
+		// build before the tasks start rather than in the first of them
+		prepare();
+		final int capacity = result.getCapacity();
+		List<Future<ResultHeap>> futureList = new ArrayList<Future<ResultHeap>>();
+		// each task counts on its own and hands over through its future
+		final SolveMetrics[] partMetricsArray = new SolveMetrics[boardWidth + boardHeight];
+		for (final int orientation : new int[] { VER, HOR }) {
+			int lineCount = orientation == HOR ? boardHeight : boardWidth;
+			for (int line = 0; line < lineCount; line++) {
+				final int fromLine = line;
+				final int part = futureList.size();
+				futureList.add(service.submit(new Callable<ResultHeap>() {
+					public ResultHeap call() {
+						ResultHeap partHeap = new ResultHeap(capacity);
+						partMetricsArray[part] = new SolveMetrics();
+						collectOrientation(snapshot, ranges, type, freqArray, jokerCount, orientation, fromLine,
+								fromLine + 1, partHeap, partMetricsArray[part]);
+						return partHeap;
+					}
+				}));
+			}
+		}
+		try {
+			for (int i = 0; i < futureList.size(); i++) {
+				checkCancelled(monitor);
+				result.merge(futureList.get(i).get());
+				metrics.add(partMetricsArray[i]);
+				if (monitor != null) {
+					monitor.lineDone(i + 1, futureList.size(), result.toSet());
+				}
+			}
+		} catch (CancellationException e) {
+			cancelAll(futureList);
+			throw e;
+		} catch (InterruptedException e) {
+			cancelAll(futureList);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while solving", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unable to solve", e.getCause());
+		}
+	}
+
+	private static void cancelAll(List<Future<ResultHeap>> futureList) {
+		for (Future<ResultHeap> future : futureList) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Collects the combos starting on the given lines of an orientation into a
+	 * sink, which mirrors vertical combos into board coordinates.
+	 */
+	private void collectOrientation(Position snapshot, Position.WordRanges ranges, GeneratorType type,
+			int[] freqArray, int jokerCount, int orientation, int fromLine, int toLine, ComboSink outSink,
+			SolveMetrics metrics) {
+		Cell[][] cellMatrix = snapshot.getCellMatrix(orientation);
+		int[][] minMatrix = ranges.minMatrixArray[orientation];
+		int[][] maxMatrix = ranges.maxMatrixArray[orientation];
+		int[][] startMatrix = ranges.startMatrixArray[orientation];
+		Scratch scratch = scratchPool.poll();
+		if (scratch == null) {
+			scratch = new Scratch();
+		}
+		try {
+			if (type == GeneratorType.DAWG) {
+				if (scratch.generator == null) {
+					scratch.generator = new MoveGenerator(mainDictionary.getDawg(), scoring);
+				}
+				scratch.generator.collectCombos(freqArray, jokerCount, cellMatrix, minMatrix, maxMatrix, startMatrix,
+						orientation, fromLine, toLine, outSink, metrics);
+			} else {
+				collectCombos(freqArray, jokerCount, cellMatrix, snapshot.getAllowedMasks(orientation), minMatrix,
+						maxMatrix, startMatrix, orientation, fromLine, toLine, scratch, outSink, metrics);
+			}
+		} finally {
+			scratchPool.offer(scratch);
+		}
+	}
+
+	/**
+	 * Builds the next snapshot: new cells for the stale columns and lines, with
+	 * their caches and anchors brought up to date, and the cells and anchors of
+	 * the previous snapshot everywhere else.
+	 */
+	private Position createPosition(SolveMetrics metrics) {
+		Cell[][][] cellMatrixArray = new Cell[2][][];
+		int[][][] anchorArray = new int[2][][];
+		long[][][] maskArray = new long[2][][];
+		for (int o = HOR; o <= VER; o++) {
+			Cell[][] lastMatrix = lastPosition.getCellMatrix(o);
+			Cell[][] cellMatrix = new Cell[lastMatrix.length][];
+			boolean[] staleColumns = staleColumnArray[o];
+			boolean[] staleLines = staleLineArray[o];
+			for (int x = 0; x < cellMatrix.length; x++) {
+				cellMatrix[x] = lastMatrix[x].clone();
+				for (int y = 0; y < cellMatrix[x].length; y++) {
+					if (staleColumns[x] || staleLines[y]) {
+						Cell c = new Cell(lastMatrix[x][y]);
+						c.letter = o == HOR ? letterMatrix[x][y] : letterMatrix[y][x];
+						cellMatrix[x][y] = c;
+					}
+				}
+			}
+			cellMatrixArray[o] = cellMatrix;
+		}
+		for (int o = HOR; o <= VER; o++) {
+			Cell[][] cellMatrix = cellMatrixArray[o];
+			boolean[] staleColumns = staleColumnArray[o];
+			boolean[] staleLines = staleLineArray[o];
+			long start = System.nanoTime();
+			long[][] lastMasks = lastPosition.getAllowedMasks(o);
+			long[][] masks = lastMasks.clone();
+			for (int x = 0; x < staleColumns.length; x++) {
+				if (staleColumns[x]) {
+					for (int y = 0; y < cellMatrix[x].length; y++) {
+						refreshCreditCache(x, y, cellMatrix);
+						if (masks[y] == lastMasks[y]) {
+							masks[y] = lastMasks[y].clone();
+						}
+						masks[y][x] = cellMatrix[x][y].allowedMask;
+					}
+					staleColumns[x] = false;
+				}
+			}
+			maskArray[o] = masks;
+			long flagsStart = System.nanoTime();
+			int[][] anchors = lastPosition.getAnchors(o).clone();
+			for (int y = 0; y < staleLines.length; y++) {
+				if (staleLines[y]) {
+					for (int x = 0; x < cellMatrix.length; x++) {
+						refreshFlags(x, y, cellMatrix);
 					}
-					return a.compareTo(b);
+					anchors[y] = findAnchors(y, cellMatrix);
+					staleLines[y] = false;
 				}
-			});
-			for (String key : keyList) {
-				report.append("  " + key + " = " + dictionaryCacheMap.get(key) + "\n");
+			}
+			anchorArray[o] = anchors;
+			if (metrics != null) {
+				metrics.creditCacheNanos += flagsStart - start;
+				metrics.flagsNanos += System.nanoTime() - flagsStart;
+			}
+		}
+		lastPosition = new Position(cellMatrixArray, anchorArray, maskArray, positionHash);
+		return lastPosition;
+	}
+
+	/**
+	 * The columns of a line a word has to cover to connect, ascending.
+	 */
+	private static int[] findAnchors(int y, Cell[][] cellMatrix) {
+		int count = 0;
+		for (int x = 0; x < cellMatrix.length; x++) {
+			if (cellMatrix[x][y].isYetConnected) {
+				count++;
+			}
+		}
+		int[] result = new int[count];
+		count = 0;
+		for (int x = 0; x < cellMatrix.length; x++) {
+			if (cellMatrix[x][y].isYetConnected) {
+				result[count++] = x;
 			}
 		}
 		return result;
 	}
 
-	private void solveSingleOrientation(int[] freqArray, int jokerCount, Map<String, Dictionary> dictionaryCacheMap,
-			Cell[][] cellMatrix, Set<Combo> outSet) {
-		refreshCreditCache(cellMatrix);
-		refreshFlags(cellMatrix);
+	/**
+	 * Scans the filtered dictionary words of each length from the start cells
+	 * of the lines. Words are read into a scratch array and scored in place, so
+	 * candidates allocate nothing unless the result heap admits them. Only the
+	 * positions with cross checks are tested, against the allowed letter masks
+	 * of the line.
+	 */
+	private void collectCombos(int[] freqArray, int jokerCount, Cell[][] cellMatrix, long[][] maskMatrix,
+			int[][] minMatrix, int[][] maxMatrix, int[][] startMatrix, int orientation, int fromLine, int toLine,
+			Scratch scratch, ComboSink outSink, SolveMetrics metrics) {
+		Dictionary defaultDictionary = mainDictionary.getFilteredDictionary(freqArray, jokerCount, metrics);
 		int tokenCount = freqArray[freqArray.length - 1] + jokerCount;
-		refreshWordRange(tokenCount, cellMatrix);
-		collectCombos(freqArray, jokerCount, dictionaryCacheMap, cellMatrix, outSet);
-	}
-
-	private void collectCombos(int[] freqArray, int jokerCount, Map<String, Dictionary> dictionaryCacheMap,
-			Cell[][] cellMatrix, Set<Combo> outSet) {
-		String defaultKey = alphabet.frequencyToString(freqArray);
-		for (Coord coord : new BoardIterator(cellMatrix.length, cellMatrix[0].length)) {
-			Cell start = cellMatrix[coord.x][coord.y];
-			if (!start.isNoBegin && start.minWordLength > 0 && start.maxWordLength > 1) {
-				int[] frequencySumArray = null;
-				for (int l = 0; l < start.maxWordLength; l++) {
-					Cell c = cellMatrix[coord.x + l][coord.y];
+		int[] valueArray = scratch.valueArray;
+		int[] frequencySumArray = scratch.frequencySumArray;
+		int[] constrainedArray = scratch.constrainedArray;
+		int[] emptyCountArray = scratch.emptyCountArray;
+		ScoreBound bound = scratch.bound;
+		bound.setTokens(freqArray, jokerCount);
+		for (int y = fromLine; y < toLine; y++) {
+			long[] rowMask = maskMatrix[y];
+			for (int x : startMatrix[y]) {
+				Cell start = cellMatrix[x][y];
+				int minWordLength = minMatrix[x][y];
+				int maxWordLength = maxMatrix[x][y];
+				if (start.isNoBegin || minWordLength == 0 || maxWordLength <= 1) {
+					continue;
+				}
+				bound.compute(cellMatrix, x, y, maxWordLength);
+				if (bound.getBestFrom(minWordLength) < outSink.getThreshold()) {
+					metrics.boundRejectCount++;
+					continue;
+				}
+				int constrainedCount = 0;
+				for (int p = 0; p < maxWordLength; p++) {
+					Cell d = cellMatrix[x + p][y];
+					if (!d.isAllAllowed) {
+						constrainedArray[constrainedCount++] = p;
+					}
+					emptyCountArray[p + 1] = emptyCountArray[p] + (d.letter == Alphabet.EMPTY_VALUE ? 1 : 0);
+				}
+				Dictionary dict = defaultDictionary;
+				boolean fixed = false;
+				for (int l = 0; l < maxWordLength; l++) {
+					Cell c = cellMatrix[x + l][y];
 					if (c.letter != Alphabet.EMPTY_VALUE && c.letter != Alphabet.JOKER_VALUE) {
-						if (frequencySumArray == null) {
-							frequencySumArray = Arrays.copyOf(freqArray, freqArray.length);
+						if (!fixed) {
+							System.arraycopy(freqArray, 0, frequencySumArray, 0, freqArray.length);
+							fixed = true;
 						}
 						for (int i = 0; i < frequencySumArray.length; i++) {
 							frequencySumArray[i] += c.beginOfWordWithFrequency[i];
 						}
+						dict = null;
 						l += c.beginOfWordWithFrequency[c.beginOfWordWithFrequency.length - 1] - 1;
+						c = cellMatrix[x + l][y];
 					}
-					if (l + 1 >= start.minWordLength && !c.isNoEnd) {
-						Set<Word> candidateSet;
-						if (frequencySumArray == null) {
-							candidateSet = dictionaryCacheMap.get(defaultKey).get(l + 1);
-						} else {
-							String key = alphabet.frequencyToString(frequencySumArray);
-							Dictionary dict = dictionaryCacheMap.get(key);
-							if (dict == null) {
-								dict = mainDictionary.createFilteredDictionary(frequencySumArray, jokerCount);
-								dictionaryCacheMap.put(key, dict);
-							}
-							candidateSet = dict.get(l + 1);
+					if (l + 1 >= minWordLength && !c.isNoEnd) {
+						if (bound.getBound(l + 1) < outSink.getThreshold()) {
+							metrics.boundRejectCount++;
+							continue;
 						}
-						if (candidateSet != null) {
-							wordloop: for (Word word : candidateSet) {
-								int empty = 0;
-								for (int i = 0; i < word.length(); i++) {
-									Cell d = cellMatrix[coord.x + i][coord.y];
-									int e = word.valueArray[i];
-									if (d.creditCacheArray[e] < 0) {
-										continue wordloop;
-									}
-									if (d.letter == Alphabet.EMPTY_VALUE) {
-										empty++;
-									}
+						if (dict == null) {
+							dict = mainDictionary.getFilteredDictionary(frequencySumArray, jokerCount, metrics);
+						}
+						int length = l + 1;
+						int count = dict.getWordCount(length);
+						WordStore store = dict.getStore();
+						wordloop: for (int k = 0; k < count; k++) {
+							int w = dict.getWord(length, k);
+							int plainCredit = store.getCredit(w);
+							metrics.examinedCount++;
+							if (bound.getWordBound(length, plainCredit) < outSink.getThreshold()) {
+								metrics.boundRejectCount++;
+								continue;
+							}
+							int offset = store.getOffset(w);
+							for (int j = 0; j < constrainedCount; j++) {
+								int p = constrainedArray[j];
+								if (p >= length) {
+									break;
 								}
-								List<Cell> cellList = new LinkedList<Cell>();
-								for (int i = 0; i < word.length(); i++) {
-									cellList.add(cellMatrix[coord.x + i][coord.y]);
+								int e = store.getValue(offset + p);
+								if (e < Cell.MASK_SIZE ? (rowMask[x + p] >>> e & 1L) == 0
+										: cellMatrix[x + p][y].creditCacheArray[e] < 0) {
+									metrics.crossCheckRejectCount++;
+									continue wordloop;
 								}
-								boolean usedAll = empty == freqArray[freqArray.length - 1] + jokerCount;
-								int credit = scoring.getScore(word, usedAll, cellList);
-								Combo combo = new Combo(word, new Coord(coord), credit);
-								outSet.add(combo);
+							}
+							for (int i = 0; i < length; i++) {
+								valueArray[i] = store.getValue(offset + i);
+							}
+							int credit = scoring.getScore(plainCredit, emptyCountArray[length] == tokenCount,
+									valueArray, length, cellMatrix, x, y);
+							metrics.offeredCount++;
+							if (outSink.add(credit, orientation, x, y, valueArray, length, plainCredit)) {
+								metrics.admittedCount++;
+							}
+							if (outSink.isDone()) {
+								return;
 							}
 						}
 					}
@@ -218,80 +829,48 @@ public class Board {
 		}
 	}
 
-	private void refreshCreditCache(Cell[][] cellMatrix) {
-		for (Coord coord : new BoardIterator(cellMatrix.length, cellMatrix[0].length)) {
-			Cell c = cellMatrix[coord.x][coord.y];
-			if (c.letter == Alphabet.EMPTY_VALUE) {
-				int[] pattern = getPattern(coord.x, coord.y, cellMatrix);
-				if (pattern.length == 0) {
-					throw new RuntimeException("Pattern has length 0 for cell: " + c);
-				}
-				if (pattern.length == 1) {
-					if (pattern[0] != Alphabet.EMPTY_VALUE) {
-						throw new RuntimeException("Single char pattern should be ANY: " + pattern[0]);
-					}
-					c.resetCreditCache(true);
-				} else {
-					c.resetCreditCache(false);
-					mainDictionary.markAllowed(pattern, c.creditCacheArray, c.bonus, scoring);
+	private void refreshCreditCache(int x, int y, Cell[][] cellMatrix) {
+		Cell c = cellMatrix[x][y];
+		// the cache array may still be shared with the previous snapshot
+		c.creditCacheArray = new int[c.creditCacheArray.length];
+		if (c.letter == Alphabet.EMPTY_VALUE) {
+			int[] pattern = getPattern(x, y, cellMatrix);
+			if (pattern.length == 0) {
+				throw new RuntimeException("Pattern has length 0 for cell: " + c);
+			}
+			if (pattern.length == 1) {
+				if (pattern[0] != Alphabet.EMPTY_VALUE) {
+					throw new RuntimeException("Single char pattern should be ANY: " + pattern[0]);
 				}
-			} else if (c.letter == Alphabet.JOKER_VALUE) {
-				// this means we're dealing with the first stone on the
-				// board
 				c.resetCreditCache(true);
 			} else {
 				c.resetCreditCache(false);
-				c.creditCacheArray[c.letter] = 0;
+				mainDictionary.markAllowed(pattern, c.creditCacheArray, c.bonus, scoring);
 			}
+		} else if (c.letter == Alphabet.JOKER_VALUE) {
+			// this means we're dealing with the first stone on the
+			// board
+			c.resetCreditCache(true);
+		} else {
+			c.resetCreditCache(false);
+			c.creditCacheArray[c.letter] = 0;
 		}
+		c.refreshAllowedMask();
 	}
 
-	private void refreshFlags(Cell[][] cellMatrix) {
-		for (Coord coord : new BoardIterator(cellMatrix.length, cellMatrix[0].length)) {
-			Cell c = cellMatrix[coord.x][coord.y];
-			c.isNoBegin = getCell(coord.x - 1, coord.y, cellMatrix).letter != Alphabet.EMPTY_VALUE;
-			c.isNoEnd = getCell(coord.x + 1, coord.y, cellMatrix).letter != Alphabet.EMPTY_VALUE;
-			c.isYetConnected = getCell(coord.x, coord.y - 1, cellMatrix).letter != Alphabet.EMPTY_VALUE
-					|| getCell(coord.x, coord.y + 1, cellMatrix).letter != Alphabet.EMPTY_VALUE
-					|| getCell(coord.x, coord.y, cellMatrix).letter != Alphabet.EMPTY_VALUE;
-			boolean isBeginOfWord = getCell(coord.x - 1, coord.y, cellMatrix).letter == Alphabet.EMPTY_VALUE
-					&& c.letter != Alphabet.EMPTY_VALUE;
-			if (isBeginOfWord && c.letter != Alphabet.JOKER_VALUE) {
-				c.beginOfWordWithFrequency = getSequenceFrequency(coord.x, coord.y, cellMatrix);
-			} else {
-				c.beginOfWordWithFrequency = null;
-			}
-		}
-	}
-
-	private void refreshWordRange(int tokenCount, Cell[][] cellMatrix) {
-		for (Coord coord : new BoardIterator(cellMatrix.length, cellMatrix[0].length)) {
-			Cell c = cellMatrix[coord.x][coord.y];
-			c.minWordLength = 0;
-			c.maxWordLength = 0;
-			if (!c.isNoBegin) {
-				int maxWordLength = cellMatrix.length - coord.x;
-				int empty = 0;
-				boolean connected = false;
-				for (int i = 0; i < maxWordLength; i++) {
-					Cell d = cellMatrix[coord.x + i][coord.y];
-					if (d.letter == Alphabet.EMPTY_VALUE) {
-						empty++;
-						if (empty > tokenCount) {
-							break;
-						}
-					}
-					if (!connected) {
-						connected = d.isYetConnected;
-					}
-					if (connected && !d.isNoEnd && empty > 0) {
-						c.maxWordLength = i + 1;
-						if (c.minWordLength == 0) {
-							c.minWordLength = i + 1;
-						}
-					}
-				}
-			}
+	private void refreshFlags(int x, int y, Cell[][] cellMatrix) {
+		Cell c = cellMatrix[x][y];
+		c.isNoBegin = getCell(x - 1, y, cellMatrix).letter != Alphabet.EMPTY_VALUE;
+		c.isNoEnd = getCell(x + 1, y, cellMatrix).letter != Alphabet.EMPTY_VALUE;
+		c.isYetConnected = getCell(x, y - 1, cellMatrix).letter != Alphabet.EMPTY_VALUE
+				|| getCell(x, y + 1, cellMatrix).letter != Alphabet.EMPTY_VALUE
+				|| getCell(x, y, cellMatrix).letter != Alphabet.EMPTY_VALUE;
+		boolean isBeginOfWord = getCell(x - 1, y, cellMatrix).letter == Alphabet.EMPTY_VALUE
+				&& c.letter != Alphabet.EMPTY_VALUE;
+		if (isBeginOfWord && c.letter != Alphabet.JOKER_VALUE) {
+			c.beginOfWordWithFrequency = getSequenceFrequency(x, y, cellMatrix);
+		} else {
+			c.beginOfWordWithFrequency = null;
 		}
 	}
 
@@ -322,7 +901,6 @@ public class Board {
 		return result;
 	}
 
-	// in theory this needs to be done only once per cell per whole game
 	private int[] getSequenceFrequency(int x, int y, Cell[][] cellMatrix) {
 		int[] result = new int[alphabet.getSize() + 1];
 		for (int i = x;; i++) {
@@ -344,6 +922,22 @@ public class Board {
 		return BORDER_CELL;
 	}
 
+	public int getWidth() {
+		return boardWidth;
+	}
+
+	public int getHeight() {
+		return boardHeight;
+	}
+
+	public int getMaxNumberOfResults() {
+		return maxNumberOfResults;
+	}
+
+	public void setMaxNumberOfResults(int maxNumberOfResults) {
+		this.maxNumberOfResults = maxNumberOfResults;
+	}
+
 	public Alphabet getAlphabet() {
 		return alphabet;
 	}
@@ -356,6 +950,38 @@ public class Board {
 		return mainDictionary;
 	}
 
+	public GeneratorType getGeneratorType() {
+		return generatorType;
+	}
+
+	public void setGeneratorType(GeneratorType generatorType) {
+		this.generatorType = generatorType;
+	}
+
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Sets the cache single rack solves without a monitor share their results
+	 * through, or null for none, the default.
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor to collect combos on in parallel, or null to collect on
+	 * the calling thread.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
 	@Override
 	public String toString() {
 		return "Board(" + boardWidth + ", " + boardHeight + ")";
@@ -2,22 +2,47 @@ package net.sf.scrabble.core;
 
 /**
  * A single spot on the board, accomanied with some caches that keep track of
- * candidate letters and score.
+ * candidate letters and score. Cells are not changed once they are part of a
+ * position snapshot.
+ * <p>
+ * The letters the cross checks allow are kept as a bit mask as well, one bit
+ * per letter value, so the generators can test them without going through
+ * the credit array. Values from MASK_SIZE on have no bit and are looked up in
+ * the credit array.
  */
 class Cell {
+	public static final int MASK_SIZE = 64;
+	// the cross word credit per letter value, -1 if not allowed
 	public int[] creditCacheArray;
+	public long allowedMask;
+	public boolean isAllAllowed;
 	public int letter = Alphabet.EMPTY_VALUE;
 	public int bonus = 0;
 	// caching
 	public boolean isNoBegin;
 	public boolean isNoEnd;
 	public boolean isYetConnected;
-	public int minWordLength;
-	public int maxWordLength;
 	public int[] beginOfWordWithFrequency;
 
 	public Cell(int alphabetSize) {
 		creditCacheArray = new int[alphabetSize];
+		refreshAllowedMask();
+	}
+
+	/**
+	 * A copy that shares the cache arrays of the original until they are
+	 * replaced.
+	 */
+	public Cell(Cell cell) {
+		creditCacheArray = cell.creditCacheArray;
+		allowedMask = cell.allowedMask;
+		isAllAllowed = cell.isAllAllowed;
+		letter = cell.letter;
+		bonus = cell.bonus;
+		isNoBegin = cell.isNoBegin;
+		isNoEnd = cell.isNoEnd;
+		isYetConnected = cell.isYetConnected;
+		beginOfWordWithFrequency = cell.beginOfWordWithFrequency;
 	}
 
 	public void resetCreditCache(boolean allowed) {
@@ -27,6 +52,29 @@ class Cell {
 		}
 	}
 
+	/**
+	 * Brings the mask in line with the credit array, after it has been filled.
+	 */
+	public void refreshAllowedMask() {
+		long mask = 0;
+		boolean all = true;
+		for (int i = 0; i < creditCacheArray.length; i++) {
+			if (creditCacheArray[i] >= 0) {
+				if (i < MASK_SIZE) {
+					mask |= 1L << i;
+				}
+			} else {
+				all = false;
+			}
+		}
+		allowedMask = mask;
+		isAllAllowed = all;
+	}
+
+	public boolean isAllowed(int value) {
+		return value < MASK_SIZE ? (allowedMask >>> value & 1L) != 0 : creditCacheArray[value] >= 0;
+	}
+
 	@Override
 	public String toString() {
 		return super.toString();
@@ -37,16 +85,10 @@ class Cell {
 		builder.append("Cell(letter=" + letter);
 		builder.append("  no-begin=" + (isNoBegin ? "T" : "F"));
 		builder.append("  no-end=" + (isNoEnd ? "T" : "F"));
-		if (minWordLength > 0) {
-			builder.append("  min=" + minWordLength);
-		}
-		if (maxWordLength > 0) {
-			builder.append("  max=" + maxWordLength);
-		}
 		builder.append("  connect=" + (isYetConnected ? "T" : "F"));
 		builder.append("  allowed=");
 		for (int i = 0; i < creditCacheArray.length; i++) {
-			if (creditCacheArray[i] >= 0) {
+			if (isAllowed(i)) {
 				builder.appendCodePoint(alphabet.getCodeForValue(i));
 			}
 		}
@@ -0,0 +1,26 @@
+package net.sf.scrabble.core;
+
+/**
+ * Where the generators put the combos they find, given in the line
+ * coordinates of their orientation: position along the line and line index.
+ * The value array is scratch space of the generator, so a sink copies what it
+ * keeps.
+ */
+interface ComboSink {
+	/**
+	 * Offers a combo; true if the sink took it.
+	 */
+	boolean add(int credit, int orientation, int position, int line, int[] valueArray, int length, int plainCredit);
+
+	/**
+	 * The credits a combo needs at least for the sink to take it; the
+	 * generators skip what cannot reach it.
+	 */
+	int getThreshold();
+
+	/**
+	 * Whether the sink wants no more combos, checked by the generators as they
+	 * go.
+	 */
+	boolean isDone();
+}
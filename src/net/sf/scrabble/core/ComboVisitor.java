@@ -0,0 +1,11 @@
+package net.sf.scrabble.core;
+
+/**
+ * Receives combos one by one as they are generated.
+ */
+public interface ComboVisitor {
+	/**
+	 * Called for each combo found; return false to stop generating.
+	 */
+	boolean visit(Combo combo);
+}
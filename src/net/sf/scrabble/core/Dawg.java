@@ -0,0 +1,221 @@
+package net.sf.scrabble.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A directed acyclic word graph: the minimized letter trie of a dictionary,
+ * packed into arrays. Words are grown from the root one letter value at a
+ * time.
+ */
+class Dawg {
+	public static final int ROOT = 0;
+	public static final int NONE = -1;
+	private int[] edgeStartArray;
+	private int[] edgeValueArray;
+	private int[] edgeTargetArray;
+	private boolean[] terminalArray;
+
+	private static class Node {
+		private boolean terminal;
+		private int size;
+		private int[] valueArray = new int[2];
+		private Node[] targetArray = new Node[2];
+		private int id = NONE;
+
+		private void add(int value, Node target) {
+			if (size == valueArray.length) {
+				valueArray = Arrays.copyOf(valueArray, size * 2);
+				targetArray = Arrays.copyOf(targetArray, size * 2);
+			}
+			valueArray[size] = value;
+			targetArray[size] = target;
+			size++;
+		}
+
+		private Node last() {
+			return size == 0 ? null : targetArray[size - 1];
+		}
+
+		@Override
+		public int hashCode() {
+			int result = terminal ? 1 : 0;
+			for (int i = 0; i < size; i++) {
+				result = 31 * result + valueArray[i];
+				result = 31 * result + System.identityHashCode(targetArray[i]);
+			}
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Node)) {
+				return false;
+			}
+			Node other = (Node) obj;
+			if (terminal != other.terminal || size != other.size) {
+				return false;
+			}
+			for (int i = 0; i < size; i++) {
+				if (valueArray[i] != other.valueArray[i] || targetArray[i] != other.targetArray[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private Dawg() {
+	}
+
+	public int getNodeCount() {
+		return terminalArray.length;
+	}
+
+	public boolean isTerminal(int node) {
+		return terminalArray[node];
+	}
+
+	public int getEdgeBegin(int node) {
+		return edgeStartArray[node];
+	}
+
+	public int getEdgeEnd(int node) {
+		return edgeStartArray[node + 1];
+	}
+
+	public int getEdgeValue(int edge) {
+		return edgeValueArray[edge];
+	}
+
+	public int getEdgeTarget(int edge) {
+		return edgeTargetArray[edge];
+	}
+
+	/**
+	 * Follows the edge with the given value, or returns NONE if there is none.
+	 */
+	public int getChild(int node, int value) {
+		int end = edgeStartArray[node + 1];
+		for (int e = edgeStartArray[node]; e < end; e++) {
+			int v = edgeValueArray[e];
+			if (v == value) {
+				return edgeTargetArray[e];
+			}
+			if (v > value) {
+				break;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Builds the minimal graph using incremental construction over the words
+	 * in lexicographic order (Daciuk et al.).
+	 */
+	public static Dawg createFrom(Collection<int[]> sequences) {
+		List<int[]> sorted = new ArrayList<int[]>(sequences);
+		Collections.sort(sorted, new Comparator<int[]>() {
+			public int compare(int[] a, int[] b) {
+				int length = Math.min(a.length, b.length);
+				for (int i = 0; i < length; i++) {
+					if (a[i] != b[i]) {
+						return a[i] - b[i];
+					}
+				}
+				return a.length - b.length;
+			}
+		});
+		Map<Node, Node> register = new HashMap<Node, Node>();
+		Node root = new Node();
+		int[] previous = new int[0];
+		for (int[] sequence : sorted) {
+			int prefix = 0;
+			Node node = root;
+			while (prefix < sequence.length && prefix < previous.length && sequence[prefix] == previous[prefix]) {
+				node = node.last();
+				prefix++;
+			}
+			if (prefix == sequence.length && prefix == previous.length) {
+				continue;
+			}
+			if (node.size > 0) {
+				replaceOrRegister(node, register);
+			}
+			for (int i = prefix; i < sequence.length; i++) {
+				Node child = new Node();
+				node.add(sequence[i], child);
+				node = child;
+			}
+			node.terminal = true;
+			previous = sequence;
+		}
+		if (root.size > 0) {
+			replaceOrRegister(root, register);
+		}
+		return pack(root);
+	}
+
+	private static void replaceOrRegister(Node node, Map<Node, Node> register) {
+		Node child = node.last();
+		if (child.size > 0) {
+			replaceOrRegister(child, register);
+		}
+		Node existing = register.get(child);
+		if (existing != null) {
+			node.targetArray[node.size - 1] = existing;
+		} else {
+			register.put(child, child);
+		}
+	}
+
+	private static Dawg pack(Node root) {
+		List<Node> nodeList = new ArrayList<Node>();
+		root.id = 0;
+		nodeList.add(root);
+		int edgeCount = 0;
+		for (int i = 0; i < nodeList.size(); i++) {
+			Node node = nodeList.get(i);
+			edgeCount += node.size;
+			for (int j = 0; j < node.size; j++) {
+				Node target = node.targetArray[j];
+				if (target.id == NONE) {
+					target.id = nodeList.size();
+					nodeList.add(target);
+				}
+			}
+		}
+		Dawg result = new Dawg();
+		result.edgeStartArray = new int[nodeList.size() + 1];
+		result.edgeValueArray = new int[edgeCount];
+		result.edgeTargetArray = new int[edgeCount];
+		result.terminalArray = new boolean[nodeList.size()];
+		int edge = 0;
+		for (int i = 0; i < nodeList.size(); i++) {
+			Node node = nodeList.get(i);
+			result.edgeStartArray[i] = edge;
+			result.terminalArray[i] = node.terminal;
+			for (int j = 0; j < node.size; j++) {
+				result.edgeValueArray[edge] = node.valueArray[j];
+				result.edgeTargetArray[edge] = node.targetArray[j].id;
+				edge++;
+			}
+		}
+		result.edgeStartArray[nodeList.size()] = edge;
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "Dawg(nodes:" + terminalArray.length + " edges:" + edgeValueArray.length + ")";
+	}
+}
@@ -1,19 +1,30 @@
 package net.sf.scrabble.core;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A collection of words that can be scrabbled, including some routines to load
- * from file.
+ * from file. The words are kept packed in a store and referred to by index; a
+ * filtered dictionary keeps the indices of its words per length.
  */
 public class Dictionary {
 	private final static Map<Integer, Integer> replaceMap = new HashMap<Integer, Integer>();
@@ -40,60 +51,172 @@ public class Dictionary {
 			replaceMap.put(Integer.valueOf(i - 'A' + 'a'), Integer.valueOf(i));
 		}
 	}
-	protected Map<Integer, Set<Word>> wordSetMap = new HashMap<Integer, Set<Word>>();
+	private static final int PARALLEL_FILTER_THRESHOLD = 50000;
+	private static ExecutorService filterExecutor;
+	private static final FilterCache filterCache = new FilterCache();
+	private WordStore store;
+	// word indices per length, or null when all words of the store are in
+	private int[][] wordIndexArray;
+	private Dawg dawg;
+	private SignatureIndex signatureIndex;
 
-	public void add(Word word) {
-		Set<Word> set = getOrCreate(word.length());
-		set.add(word);
+	private Dictionary(WordStore store, int[][] wordIndexArray) {
+		this.store = store;
+		this.wordIndexArray = wordIndexArray;
 	}
 
-	protected Set<Word> getOrCreate(int length) {
-		Set<Word> result = wordSetMap.get(Integer.valueOf(length));
-		if (result == null) {
-			result = new HashSet<Word>();
-			wordSetMap.put(Integer.valueOf(length), result);
+	protected WordStore getStore() {
+		return store;
+	}
+
+	protected int getMaxLength() {
+		if (wordIndexArray == null) {
+			return store.getMaxLength();
 		}
-		return result;
+		return wordIndexArray.length - 1;
 	}
 
-	protected Set<Word> get(int length) {
-		return wordSetMap.get(Integer.valueOf(length));
+	protected int getWordCount(int length) {
+		if (wordIndexArray == null) {
+			return store.getLengthEnd(length) - store.getLengthBegin(length);
+		}
+		if (length < wordIndexArray.length && wordIndexArray[length] != null) {
+			return wordIndexArray[length].length;
+		}
+		return 0;
 	}
 
-	protected Set<Integer> getLengthSet() {
-		return wordSetMap.keySet();
+	/**
+	 * The store index of the i-th word of the given length.
+	 */
+	protected int getWord(int length, int i) {
+		if (wordIndexArray == null) {
+			return store.getLengthBegin(length) + i;
+		}
+		return wordIndexArray[length][i];
 	}
 
-	protected Dictionary createFilteredDictionary(int[] sequence) {
-		Dictionary result = new Dictionary();
-		for (Entry<Integer, Set<Word>> entry : wordSetMap.entrySet()) {
-			if (entry.getKey().intValue() > sequence.length) {
-				Set<Word> set = entry.getValue();
-				for (Word word : set) {
-					if (word.contains(sequence)) {
-						result.add(word);
-					}
+	public int size() {
+		if (wordIndexArray == null) {
+			return store.size();
+		}
+		int result = 0;
+		for (int length = 0; length < wordIndexArray.length; length++) {
+			result += getWordCount(length);
+		}
+		return result;
+	}
+
+	protected synchronized Dawg getDawg() {
+		if (dawg == null) {
+			List<int[]> sequenceList = new ArrayList<int[]>();
+			for (int length = 0; length <= getMaxLength(); length++) {
+				int count = getWordCount(length);
+				for (int i = 0; i < count; i++) {
+					sequenceList.add(store.getValueArray(getWord(length, i)));
 				}
 			}
+			dawg = Dawg.createFrom(sequenceList);
+		}
+		return dawg;
+	}
+
+	protected synchronized SignatureIndex getSignatureIndex() {
+		if (signatureIndex == null) {
+			signatureIndex = new SignatureIndex(this);
+		}
+		return signatureIndex;
+	}
+
+	/**
+	 * The shared cache of filtered dictionaries, for tuning and statistics.
+	 */
+	public static FilterCache getFilterCache() {
+		return filterCache;
+	}
+
+	/**
+	 * The words that can be made out of the tokens, from the filter cache if
+	 * available.
+	 */
+	protected Dictionary getFilteredDictionary(int[] freqArray, int jokerCount) {
+		return getFilteredDictionary(freqArray, jokerCount, null);
+	}
+
+	/**
+	 * As above, counting the cache hit or miss in the metrics, if not null.
+	 */
+	Dictionary getFilteredDictionary(int[] freqArray, int jokerCount, SolveMetrics metrics) {
+		FilterCache.Key key = new FilterCache.Key(this, freqArray, jokerCount, filterCache.getStaleQueue());
+		Dictionary result = filterCache.get(key);
+		if (result == null) {
+			result = createFilteredDictionary(freqArray, jokerCount);
+			filterCache.put(key, result);
+			if (metrics != null) {
+				metrics.filterMissCount++;
+			}
+		} else if (metrics != null) {
+			metrics.filterHitCount++;
 		}
 		return result;
 	}
 
-	protected Dictionary createFilteredDictionary(int[] freqArray, int jokerCount) {
-		Dictionary result = new Dictionary();
-		for (Entry<Integer, Set<Word>> entry : wordSetMap.entrySet()) {
-			if (entry.getKey().intValue() <= freqArray[freqArray.length - 1] + jokerCount) {
-				Set<Word> set = entry.getValue();
-				for (Word word : set) {
-					if (word.canBeMadeOutOf(freqArray, jokerCount)) {
-						result.add(word);
+	protected Dictionary createFilteredDictionary(final int[] freqArray, final int jokerCount) {
+		final SignatureIndex index = getSignatureIndex();
+		int maxLength = Math.min(index.getMaxLength(), freqArray[freqArray.length - 1] + jokerCount);
+		List<Integer> lengthList = new ArrayList<Integer>();
+		for (int length = 0; length <= maxLength; length++) {
+			if (index.hasLength(length)) {
+				lengthList.add(Integer.valueOf(length));
+			}
+		}
+		int[][] result = new int[maxLength + 1][];
+		if (lengthList.size() > 1 && size() >= PARALLEL_FILTER_THRESHOLD) {
+			List<Future<int[]>> futureList = new ArrayList<Future<int[]>>();
+			for (final Integer length : lengthList) {
+				futureList.add(getFilterExecutor().submit(new Callable<int[]>() {
+					public int[] call() {
+						return index.filter(length.intValue(), freqArray, jokerCount);
 					}
+				}));
+			}
+			for (int i = 0; i < lengthList.size(); i++) {
+				try {
+					result[lengthList.get(i).intValue()] = futureList.get(i).get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while filtering dictionary", e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException("Unable to filter dictionary", e.getCause());
 				}
 			}
+		} else {
+			for (Integer length : lengthList) {
+				result[length.intValue()] = index.filter(length.intValue(), freqArray, jokerCount);
+			}
 		}
-		return result;
+		return new Dictionary(store, result);
 	}
 
+	private static synchronized ExecutorService getFilterExecutor() {
+		if (filterExecutor == null) {
+			filterExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread result = new Thread(r, "dictionary-filter");
+							result.setDaemon(true);
+							return result;
+						}
+					});
+		}
+		return filterExecutor;
+	}
+
+	/**
+	 * Marks the credit of each letter that completes the pattern to a word.
+	 * The dictionary graph answers this in time proportional to the pattern
+	 * length, whichever generator the board uses.
+	 */
 	protected void markAllowed(int[] pattern, int[] outCredit, int bonus, Scoring scoring) {
 		int index = -1;
 		for (int i = 0; i < pattern.length; i++) {
@@ -107,48 +230,106 @@ public class Dictionary {
 		if (index < 0) {
 			throw new RuntimeException("Pattern does not contain the ANY char: " + Word.toString(pattern));
 		}
-		Set<Word> set = wordSetMap.get(Integer.valueOf(pattern.length));
-		if (set != null) {
-			for (Word word : set) {
-				if (word.matches(pattern)) {
-					int value = word.valueArray[index];
-					outCredit[value] = scoring.getScore(word, value, bonus);
-				}
+		// follow the letters before the gap, then try every branch at the gap
+		// against the letters after it
+		Dawg graph = getDawg();
+		int node = Dawg.ROOT;
+		int prefixCredit = 0;
+		for (int i = 0; i < index && node != Dawg.NONE; i++) {
+			node = graph.getChild(node, pattern[i]);
+			prefixCredit += scoring.getCreditFor(pattern[i]);
+		}
+		if (node == Dawg.NONE) {
+			return;
+		}
+		int suffixCredit = 0;
+		for (int i = index + 1; i < pattern.length; i++) {
+			suffixCredit += scoring.getCreditFor(pattern[i]);
+		}
+		int end = graph.getEdgeEnd(node);
+		for (int e = graph.getEdgeBegin(node); e < end; e++) {
+			int child = graph.getEdgeTarget(e);
+			for (int i = index + 1; i < pattern.length && child != Dawg.NONE; i++) {
+				child = graph.getChild(child, pattern[i]);
+			}
+			if (child != Dawg.NONE && graph.isTerminal(child)) {
+				int value = graph.getEdgeValue(e);
+				int plainCredit = prefixCredit + scoring.getCreditFor(value) + suffixCredit;
+				outCredit[value] = scoring.getScore(plainCredit, value, bonus);
 			}
 		}
 	}
 
-	public static Dictionary readFrom(Reader r, Alphabet alphabet, Scoring scoring) throws IOException {
-		Dictionary result = new Dictionary();
-		BufferedReader reader;
+	private static BufferedReader toBufferedReader(Reader r) {
 		if (r instanceof BufferedReader) {
-			reader = (BufferedReader) r;
-		} else {
-			reader = new BufferedReader(r);
+			return (BufferedReader) r;
+		}
+		return new BufferedReader(r);
+	}
+
+	private static String normalize(String line) {
+		char[] array = line.toCharArray();
+		for (int i = 0; i < array.length; i++) {
+			Integer boxed = replaceMap.get(Integer.valueOf(array[i]));
+			if (boxed != null) {
+				array[i] = (char) boxed.intValue();
+			}
 		}
+		return new String(array);
+	}
+
+	private static List<int[]> readSequences(Reader r, Alphabet alphabet) throws IOException {
+		List<int[]> result = new ArrayList<int[]>();
+		BufferedReader reader = toBufferedReader(r);
 		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-			char[] array = line.toCharArray();
-			for (int i = 0; i < array.length; i++) {
-				Integer boxed = replaceMap.get(Integer.valueOf(array[i]));
-				if (boxed != null) {
-					array[i] = (char) boxed.intValue();
-				}
+			String word = normalize(line);
+			int[] sequence = new int[word.length()];
+			for (int i = 0; i < sequence.length; i++) {
+				sequence[i] = alphabet.getValueForCode(word.codePointAt(i));
 			}
-			result.add(Word.createFrom(new String(array), alphabet, scoring));
+			result.add(sequence);
 		}
 		return result;
 	}
 
+	public static Dictionary readFrom(Reader r, Alphabet alphabet, Scoring scoring) throws IOException {
+		return new Dictionary(WordStore.createFrom(readSequences(r, alphabet), alphabet, scoring), null);
+	}
+
+	/**
+	 * Compiles a word list into an image that can be opened with openImage.
+	 */
+	public static void compile(Reader r, Alphabet alphabet, Scoring scoring, OutputStream out) throws IOException {
+		WordStore.createFrom(readSequences(r, alphabet), alphabet, scoring).writeTo(out);
+	}
+
+	/**
+	 * Maps a compiled image into memory; words are served from the mapping.
+	 */
+	public static Dictionary openImage(File file, Alphabet alphabet, Scoring scoring) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			WordStore store = WordStore.readFrom(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+			store.checkCompatible(alphabet, scoring);
+			return new Dictionary(store, null);
+		} finally {
+			// the mapping stays valid after closing
+			randomAccessFile.close();
+		}
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("Dictionary(");
-		int sum = 0;
-		for (Entry<Integer, Set<Word>> entry : wordSetMap.entrySet()) {
-			builder.append(entry.getKey() + ":" + entry.getValue().size() + " ");
-			sum += entry.getValue().size();
+		for (int length = 0; length <= getMaxLength(); length++) {
+			int count = getWordCount(length);
+			if (count > 0) {
+				builder.append(length + ":" + count + " ");
+			}
 		}
-		builder.append("#:" + sum);
+		builder.append("#:" + size());
 		builder.append(")");
 		return builder.toString();
 	}
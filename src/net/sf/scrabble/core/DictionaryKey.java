@@ -0,0 +1,21 @@
+package net.sf.scrabble.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A cache key that refers to its dictionary weakly, so a cache does not keep
+ * a dictionary nothing else uses. Once the dictionary is reclaimed the key is
+ * put on the queue of its cache, which then drops the entry; from then on the
+ * key only equals itself.
+ */
+abstract class DictionaryKey extends WeakReference<Dictionary> {
+	DictionaryKey(Dictionary dictionary, ReferenceQueue<Object> queue) {
+		super(dictionary, queue);
+	}
+
+	boolean isSameDictionary(DictionaryKey other) {
+		Dictionary dictionary = get();
+		return dictionary != null && dictionary == other.get();
+	}
+}
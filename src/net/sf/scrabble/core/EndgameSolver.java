@@ -0,0 +1,470 @@
+package net.sf.scrabble.core;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.Random;
+
+/**
+ * Searches the best sequence of moves once the bag is empty and both racks
+ * are known, rather than the best scoring move. The search is a negamax over
+ * the score differential with alpha-beta pruning and iterative deepening, on
+ * a board of its own on which moves are made and unmade. Moves are tried in
+ * the order of their credits, after the best move of an earlier search of the
+ * same position.
+ * <p>
+ * Positions are remembered in a transposition table keyed by a Zobrist hash
+ * of the letters on the board, both racks, the side to move and whether the
+ * last move was a pass. The game ends when a player runs out of tiles, who
+ * then gains the credits left on the other rack while the other loses them,
+ * or after two passes in a row, when both lose the credits of their own rack.
+ * Lines cut off by the depth count as even from there on.
+ * <p>
+ * Only the best scoring moves of each position are tried, up to the move
+ * limit, as full racks have thousands of moves. Deepening stops once every
+ * line of the moves tried reaches the end of the game; the result is proven
+ * only if no moves were left out as well. With a limit, the move lists of
+ * positions are cached, so deepening does not generate them again.
+ */
+public class EndgameSolver {
+	public static final int DEFAULT_TABLE_BITS = 20;
+	public static final int DEFAULT_MOVE_LIMIT = 20;
+	public static final int MOVE_CACHE_BITS = 14;
+	private static final int INFINITY = 1000000;
+	// depth of a table entry whose subtree was searched to the end of the game
+	private static final int PROVEN = 127;
+	private static final byte EXACT = 0;
+	private static final byte LOWER = 1;
+	private static final byte UPPER = 2;
+	// added to the flag of an entry whose subtree left out moves
+	private static final byte TRUNCATED = 4;
+	private static final long KEY_SEED = 0x5DEECE66DL;
+	private Board board;
+	private Alphabet alphabet;
+	private Scoring scoring;
+	private int moveLimit = DEFAULT_MOVE_LIMIT;
+	private int tableBits = DEFAULT_TABLE_BITS;
+	// search state
+	private Board playBoard;
+	private Rack[] rackArray = new Rack[2];
+	private int side;
+	private long boardHash;
+	private long nodeCount;
+	private long deadline;
+	private boolean horizon;
+	private boolean truncated;
+	private int rootBestIndex;
+	// made moves per ply: the cells filled, their previous codes and the tokens used
+	private int[][] placedXMatrix;
+	private int[][] placedYMatrix;
+	private int[][] placedCodeMatrix;
+	private int[][] placedTokenMatrix;
+	private int[] placedCountArray;
+	// Zobrist keys
+	private long[][][] cellKeyMatrix;
+	private long[][][] rackKeyMatrix;
+	private long sideKey;
+	private long passKey;
+	// transposition table
+	private long[] keyArray;
+	private int[] valueArray;
+	private byte[] depthArray;
+	private byte[] flagArray;
+	private int[] moveArray;
+	// move lists, direct mapped by the board and the rack to move
+	private long[] moveKeyArray;
+	private Combo[][] moveListMatrix;
+
+	/**
+	 * The best move found and how far the search got.
+	 */
+	public static class Result {
+		private final Combo combo;
+		private final int value;
+		private final int depth;
+		private final boolean isComplete;
+		private final boolean isProven;
+		private final long nodeCount;
+		private final long elapsedNanos;
+
+		Result(Combo combo, int value, int depth, boolean isComplete, boolean isProven, long nodeCount,
+				long elapsedNanos) {
+			this.combo = combo;
+			this.value = value;
+			this.depth = depth;
+			this.isComplete = isComplete;
+			this.isProven = isProven;
+			this.nodeCount = nodeCount;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * The move to play, or null to pass.
+		 */
+		public Combo getCombo() {
+			return combo;
+		}
+
+		/**
+		 * The score differential of the rest of the game for the side to move,
+		 * including the move itself.
+		 */
+		public int getValue() {
+			return value;
+		}
+
+		/**
+		 * The depth in plies of the last search that completed.
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * Whether the search reached the end of the game on every line of the
+		 * moves it tried, which makes the move the best among those.
+		 */
+		public boolean isComplete() {
+			return isComplete;
+		}
+
+		/**
+		 * Whether the search was complete and left out no moves, which makes
+		 * the move the best there is.
+		 */
+		public boolean isProven() {
+			return isProven;
+		}
+
+		public long getNodeCount() {
+			return nodeCount;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getNodesPerSecond() {
+			return elapsedNanos == 0 ? 0 : nodeCount * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Endgame(value:%d depth:%d complete:%s proven:%s nodes:%d ms:%d nodes/s:%.0f)",
+					Integer.valueOf(value), Integer.valueOf(depth), Boolean.valueOf(isComplete),
+					Boolean.valueOf(isProven),
+					Long.valueOf(nodeCount), Long.valueOf(elapsedNanos / 1000000),
+					Double.valueOf(getNodesPerSecond()));
+		}
+	}
+
+	private static class TimeoutException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	public EndgameSolver(Board board) {
+		this.board = board;
+		alphabet = board.getAlphabet();
+		scoring = board.getScoring();
+	}
+
+	/**
+	 * Searches the position of the board with the given racks for at most
+	 * about the given time, our rack to move.
+	 */
+	public Result solve(String ownTokens, String otherTokens, long budgetMillis) {
+		long start = System.nanoTime();
+		deadline = start + budgetMillis * 1000000;
+		setUp(ownTokens, otherTokens);
+		int maxDepth = 2 * (rackArray[0].size() + rackArray[1].size()) + 2;
+		Combo[] rootMoves = generate();
+		Combo bestCombo = rootMoves.length == 0 ? null : rootMoves[0];
+		int bestValue = 0;
+		int depth = 0;
+		boolean isComplete = false;
+		boolean isProven = false;
+		try {
+			for (int d = 1; d <= maxDepth && !isComplete; d++) {
+				horizon = false;
+				truncated = false;
+				int value = search(d, -INFINITY, INFINITY, 0, 0);
+				bestCombo = rootBestIndex < rootMoves.length ? rootMoves[rootBestIndex] : null;
+				bestValue = value;
+				depth = d;
+				isComplete = !horizon;
+				isProven = isComplete && !truncated;
+			}
+		} catch (TimeoutException e) {
+			// keep the result of the last completed depth
+		}
+		playBoard = null;
+		return new Result(bestCombo, bestValue, depth, isComplete, isProven, nodeCount, System.nanoTime() - start);
+	}
+
+	private void setUp(String ownTokens, String otherTokens) {
+		int width = board.getWidth();
+		int height = board.getHeight();
+		playBoard = new Board(width, height, board.getDictionary(), alphabet, scoring);
+		playBoard.setGeneratorType(board.getGeneratorType());
+		playBoard.setMaxNumberOfResults(moveLimit > 0 ? moveLimit : Integer.MAX_VALUE);
+		rackArray[0] = new Rack(ownTokens, alphabet);
+		rackArray[1] = new Rack(otherTokens, alphabet);
+		side = 0;
+		nodeCount = 0;
+		int size = alphabet.getSize();
+		int maxCount = Math.max(rackArray[0].size(), rackArray[1].size());
+		Random random = new Random(KEY_SEED);
+		cellKeyMatrix = new long[width][height][size];
+		boardHash = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				for (int v = 0; v < size; v++) {
+					cellKeyMatrix[x][y][v] = random.nextLong();
+				}
+				int code = board.getCode(x, y);
+				playBoard.setCode(x, y, code);
+				int value = alphabet.getValueForToken(code);
+				if (value >= 0) {
+					boardHash ^= cellKeyMatrix[x][y][value];
+				}
+			}
+		}
+		// a key per side, letter value or joker, and count
+		rackKeyMatrix = new long[2][size + 1][maxCount + 1];
+		for (int s = 0; s < 2; s++) {
+			for (int v = 0; v <= size; v++) {
+				for (int c = 0; c <= maxCount; c++) {
+					rackKeyMatrix[s][v][c] = random.nextLong();
+				}
+			}
+		}
+		sideKey = random.nextLong();
+		passKey = random.nextLong();
+		int maxPly = 2 * (rackArray[0].size() + rackArray[1].size()) + 3;
+		int lineLength = Math.max(width, height);
+		placedXMatrix = new int[maxPly][lineLength];
+		placedYMatrix = new int[maxPly][lineLength];
+		placedCodeMatrix = new int[maxPly][lineLength];
+		placedTokenMatrix = new int[maxPly][lineLength];
+		placedCountArray = new int[maxPly];
+		int tableSize = 1 << tableBits;
+		if (keyArray == null || keyArray.length != tableSize) {
+			keyArray = new long[tableSize];
+			valueArray = new int[tableSize];
+			depthArray = new byte[tableSize];
+			flagArray = new byte[tableSize];
+			moveArray = new int[tableSize];
+		} else {
+			Arrays.fill(keyArray, 0);
+		}
+		if (moveKeyArray == null) {
+			moveKeyArray = new long[1 << MOVE_CACHE_BITS];
+			moveListMatrix = new Combo[1 << MOVE_CACHE_BITS][];
+		} else {
+			Arrays.fill(moveKeyArray, 0);
+			Arrays.fill(moveListMatrix, null);
+		}
+	}
+
+	/**
+	 * The value of the position for the side to move: the best over its
+	 * moves of their credits minus the value of the position they lead to.
+	 */
+	private int search(int depth, int alpha, int beta, int passes, int ply) {
+		nodeCount++;
+		if (System.nanoTime() > deadline) {
+			throw new TimeoutException();
+		}
+		Rack own = rackArray[side];
+		Rack other = rackArray[1 - side];
+		if (other.size() == 0) {
+			return -2 * own.getCredits(scoring);
+		}
+		if (passes >= 2) {
+			return other.getCredits(scoring) - own.getCredits(scoring);
+		}
+		if (depth == 0) {
+			horizon = true;
+			return 0;
+		}
+		long key = getKey(passes);
+		int index = (int) key & (keyArray.length - 1);
+		int hashMove = -1;
+		if (keyArray[index] == key) {
+			hashMove = moveArray[index];
+			int value = valueArray[index];
+			byte flag = (byte) (flagArray[index] & ~TRUNCATED);
+			if (depthArray[index] >= depth
+					&& (flag == EXACT || flag == LOWER && value >= beta || flag == UPPER && value <= alpha)) {
+				if (depthArray[index] != PROVEN) {
+					horizon = true;
+				}
+				if ((flagArray[index] & TRUNCATED) != 0) {
+					truncated = true;
+				}
+				if (ply == 0) {
+					rootBestIndex = hashMove;
+				}
+				return value;
+			}
+		}
+		boolean outerHorizon = horizon;
+		boolean outerTruncated = truncated;
+		horizon = false;
+		truncated = false;
+		Combo[] moves = generate();
+		if (moveLimit > 0 && moves.length >= moveLimit) {
+			// moves were left out, so the value is not proven
+			truncated = true;
+		}
+		// the moves in order of credits, with the pass last and the hash move first
+		int moveCount = moves.length + 1;
+		int alphaStart = alpha;
+		int best = -INFINITY;
+		int bestIndex = 0;
+		for (int k = -1; k < moveCount && alpha < beta; k++) {
+			int m = k;
+			if (k < 0 ? hashMove < 0 || hashMove >= moveCount : k == hashMove) {
+				continue;
+			} else if (k < 0) {
+				m = hashMove;
+			}
+			int value;
+			if (m == moves.length) {
+				side = 1 - side;
+				try {
+					value = -search(depth - 1, -beta, -alpha, passes + 1, ply + 1);
+				} finally {
+					side = 1 - side;
+				}
+			} else {
+				Combo combo = moves[m];
+				int credits = combo.getCredits();
+				make(combo, ply);
+				try {
+					value = credits - search(depth - 1, credits - beta, credits - alpha, 0, ply + 1);
+				} finally {
+					unmake(ply);
+				}
+			}
+			if (value > best) {
+				best = value;
+				bestIndex = m;
+				if (best > alpha) {
+					alpha = best;
+				}
+			}
+		}
+		keyArray[index] = key;
+		valueArray[index] = best;
+		depthArray[index] = (byte) (horizon ? depth : PROVEN);
+		flagArray[index] = (byte) ((best <= alphaStart ? UPPER : best >= beta ? LOWER : EXACT)
+				| (truncated ? TRUNCATED : 0));
+		moveArray[index] = bestIndex;
+		horizon |= outerHorizon;
+		truncated |= outerTruncated;
+		if (ply == 0) {
+			rootBestIndex = bestIndex;
+		}
+		return best;
+	}
+
+	/**
+	 * The moves of the side to move, best scoring first, from the cache if
+	 * the board and its rack were seen before with a move limit.
+	 */
+	private Combo[] generate() {
+		long key = boardHash ^ getRackKey(side);
+		int index = (int) key & (moveKeyArray.length - 1);
+		if (moveKeyArray[index] == key && moveListMatrix[index] != null) {
+			return moveListMatrix[index];
+		}
+		Rack rack = rackArray[side];
+		Set<Combo> comboSet = playBoard.collect(rack.freqArray, rack.jokerCount).toSet();
+		Combo[] result = comboSet.toArray(new Combo[comboSet.size()]);
+		// without a limit, the lists of full racks would take too much memory
+		if (moveLimit > 0) {
+			moveKeyArray[index] = key;
+			moveListMatrix[index] = result;
+		}
+		return result;
+	}
+
+	private void make(Combo combo, int ply) {
+		int dx = combo.isHorizontal() ? 1 : 0;
+		int dy = 1 - dx;
+		int[] array = combo.word.valueArray;
+		int count = 0;
+		for (int i = 0; i < array.length; i++) {
+			int x = combo.coord.x + i * dx;
+			int y = combo.coord.y + i * dy;
+			int code = playBoard.getCode(x, y);
+			if (code == alphabet.getEmptyCode() || code == alphabet.getJokerCode()) {
+				placedXMatrix[ply][count] = x;
+				placedYMatrix[ply][count] = y;
+				placedCodeMatrix[ply][count] = code;
+				boardHash ^= cellKeyMatrix[x][y][array[i]];
+				count++;
+			}
+		}
+		placedCountArray[ply] = count;
+		rackArray[side].removePlaced(combo, playBoard, placedTokenMatrix[ply]);
+		playBoard.applyCombo(combo);
+		side = 1 - side;
+	}
+
+	private void unmake(int ply) {
+		side = 1 - side;
+		Rack rack = rackArray[side];
+		for (int i = 0; i < placedCountArray[ply]; i++) {
+			int x = placedXMatrix[ply][i];
+			int y = placedYMatrix[ply][i];
+			boardHash ^= cellKeyMatrix[x][y][alphabet.getValueForToken(playBoard.getCode(x, y))];
+			playBoard.setCode(x, y, placedCodeMatrix[ply][i]);
+			rack.add(placedTokenMatrix[ply][i]);
+		}
+	}
+
+	private long getKey(int passes) {
+		long result = boardHash ^ getRackKey(0) ^ getRackKey(1);
+		if (side == 1) {
+			result ^= sideKey;
+		}
+		if (passes > 0) {
+			result ^= passKey;
+		}
+		return result;
+	}
+
+	private long getRackKey(int s) {
+		Rack rack = rackArray[s];
+		int size = rack.freqArray.length - 1;
+		long result = 0;
+		for (int v = 0; v < size; v++) {
+			result ^= rackKeyMatrix[s][v][rack.freqArray[v]];
+		}
+		return result ^ rackKeyMatrix[s][size][rack.jokerCount];
+	}
+
+	public int getMoveLimit() {
+		return moveLimit;
+	}
+
+	/**
+	 * Limits the moves tried per position to the best scoring ones, trading
+	 * proof for depth; zero tries them all, which only suits short racks.
+	 */
+	public void setMoveLimit(int moveLimit) {
+		this.moveLimit = moveLimit;
+	}
+
+	public int getTableBits() {
+		return tableBits;
+	}
+
+	/**
+	 * Sets the transposition table to 2^bits entries.
+	 */
+	public void setTableBits(int tableBits) {
+		this.tableBits = tableBits;
+	}
+}
@@ -0,0 +1,62 @@
+package net.sf.scrabble.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.Arrays;
+
+/**
+ * A thread-safe cache of filtered dictionaries, keyed by source dictionary,
+ * token frequency and joker count. The least recently used entries are evicted
+ * once the number of words held, plus a fixed overhead per entry, exceeds the
+ * maximum weight. Source dictionaries are only held weakly, and their entries
+ * dropped once they are reclaimed.
+ */
+public class FilterCache extends WeightedCache<FilterCache.Key, Dictionary> {
+	public static final long DEFAULT_MAX_WEIGHT = 1 << 22;
+	private static final int ENTRY_WEIGHT = 64;
+
+	/**
+	 * The source dictionary with the token frequencies packed a byte per letter
+	 * value, followed by the joker count.
+	 */
+	static class Key extends DictionaryKey {
+		private long[] packedArray;
+		private int hash;
+
+		Key(Dictionary source, int[] freqArray, int jokerCount, ReferenceQueue<Object> queue) {
+			super(source, queue);
+			int size = freqArray.length;
+			packedArray = new long[(size + 7) / 8];
+			for (int i = 0; i < size - 1; i++) {
+				packedArray[i >> 3] |= (long) (freqArray[i] & 0xff) << ((i & 7) << 3);
+			}
+			packedArray[(size - 1) >> 3] |= (long) (jokerCount & 0xff) << (((size - 1) & 7) << 3);
+			hash = System.identityHashCode(source) * 31 + Arrays.hashCode(packedArray);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && isSameDictionary(other) && Arrays.equals(packedArray, other.packedArray);
+		}
+	}
+
+	public FilterCache() {
+		super(DEFAULT_MAX_WEIGHT);
+	}
+
+	@Override
+	protected long weigh(Dictionary dictionary) {
+		return ENTRY_WEIGHT + dictionary.size();
+	}
+}
@@ -0,0 +1,161 @@
+package net.sf.scrabble.core;
+
+/**
+ * Generates combos by growing words through the dictionary graph from every
+ * start cell, pruning on the available tokens, the cross-check cache of each
+ * cell and the score bound of the words still possible as it goes. A
+ * generator keeps its buffers between collections, so it is used by one
+ * thread at a time.
+ */
+class MoveGenerator {
+	private Dawg dawg;
+	private Scoring scoring;
+	// per orientation
+	private Cell[][] cellMatrix;
+	private int[][] minMatrix;
+	private int[][] maxMatrix;
+	private int orientation;
+	private int[] rackArray;
+	private int jokersLeft;
+	private int tokenCount;
+	private int[] valueArray;
+	private int startX;
+	private int startY;
+	private int minWordLength;
+	private int maxWordLength;
+	private ComboSink outSink;
+	// set once the sink wants no more combos
+	private boolean stopped;
+	private ScoreBound bound;
+	private SolveMetrics metrics;
+
+	public MoveGenerator(Dawg dawg, Scoring scoring) {
+		this.dawg = dawg;
+		this.scoring = scoring;
+		bound = new ScoreBound(scoring, 0);
+	}
+
+	/**
+	 * Collects the combos that start on the start cells of the lines from
+	 * fromLine up to toLine.
+	 */
+	public void collectCombos(int[] freqArray, int jokerCount, Cell[][] cellMatrix, int[][] minMatrix,
+			int[][] maxMatrix, int[][] startMatrix, int orientation, int fromLine, int toLine, ComboSink outSink,
+			SolveMetrics metrics) {
+		this.cellMatrix = cellMatrix;
+		this.minMatrix = minMatrix;
+		this.maxMatrix = maxMatrix;
+		this.orientation = orientation;
+		this.outSink = outSink;
+		this.metrics = metrics;
+		if (rackArray == null || rackArray.length != freqArray.length - 1) {
+			rackArray = new int[freqArray.length - 1];
+		}
+		System.arraycopy(freqArray, 0, rackArray, 0, rackArray.length);
+		jokersLeft = jokerCount;
+		tokenCount = freqArray[freqArray.length - 1] + jokerCount;
+		if (valueArray == null || valueArray.length < cellMatrix.length) {
+			valueArray = new int[cellMatrix.length];
+			bound = new ScoreBound(scoring, cellMatrix.length);
+		}
+		bound.setTokens(freqArray, jokerCount);
+		stopped = false;
+		try {
+			for (int y = fromLine; y < toLine; y++) {
+				for (int x : startMatrix[y]) {
+					if (outSink.isDone()) {
+						return;
+					}
+					if (!cellMatrix[x][y].isNoBegin && minMatrix[x][y] > 0 && maxMatrix[x][y] > 1) {
+						startX = x;
+						startY = y;
+						minWordLength = minMatrix[x][y];
+						maxWordLength = maxMatrix[x][y];
+						bound.compute(cellMatrix, x, y, maxWordLength);
+						extend(Dawg.ROOT, 0, 0, 0);
+					}
+				}
+			}
+		} finally {
+			// let go of the snapshot and results
+			this.cellMatrix = null;
+			this.minMatrix = null;
+			this.maxMatrix = null;
+			this.outSink = null;
+			this.metrics = null;
+		}
+	}
+
+	/**
+	 * Extends the word at the given depth, whose letters so far earn the given
+	 * credits including their letter bonuses.
+	 */
+	private void extend(int node, int depth, int empty, int prefixCredit) {
+		if (bound.getPrefixBound(depth, prefixCredit) < outSink.getThreshold()) {
+			metrics.boundRejectCount++;
+			return;
+		}
+		Cell c = cellMatrix[startX + depth][startY];
+		if (c.letter != Alphabet.EMPTY_VALUE && c.letter != Alphabet.JOKER_VALUE) {
+			int child = dawg.getChild(node, c.letter);
+			if (child != Dawg.NONE) {
+				valueArray[depth] = c.letter;
+				visit(child, depth, empty, prefixCredit + scoring.getCreditFor(c.letter), c);
+			}
+			return;
+		}
+		int placed = c.letter == Alphabet.EMPTY_VALUE ? empty + 1 : empty;
+		int letterFactor = ScoreBound.getLetterFactor(c);
+		long allowedMask = c.allowedMask;
+		if (allowedMask == 0 && c.creditCacheArray.length <= Cell.MASK_SIZE) {
+			// no letter fits the cross checks here
+			metrics.crossCheckRejectCount++;
+			return;
+		}
+		int end = dawg.getEdgeEnd(node);
+		for (int e = dawg.getEdgeBegin(node); e < end && !stopped; e++) {
+			int value = dawg.getEdgeValue(e);
+			metrics.examinedCount++;
+			if (value < Cell.MASK_SIZE ? (allowedMask >>> value & 1L) == 0 : c.creditCacheArray[value] < 0) {
+				metrics.crossCheckRejectCount++;
+				continue;
+			}
+			valueArray[depth] = value;
+			int credit = prefixCredit + letterFactor * scoring.getCreditFor(value);
+			if (rackArray[value] > 0) {
+				rackArray[value]--;
+				visit(dawg.getEdgeTarget(e), depth, placed, credit, c);
+				rackArray[value]++;
+			} else if (jokersLeft > 0) {
+				jokersLeft--;
+				visit(dawg.getEdgeTarget(e), depth, placed, credit, c);
+				jokersLeft++;
+			} else {
+				metrics.rackRejectCount++;
+			}
+		}
+	}
+
+	private void visit(int node, int depth, int empty, int prefixCredit, Cell c) {
+		int length = depth + 1;
+		if (length >= minWordLength && !c.isNoEnd && dawg.isTerminal(node)) {
+			addCombo(length, empty);
+		}
+		if (length < maxWordLength && !stopped) {
+			extend(node, length, empty, prefixCredit);
+		}
+	}
+
+	private void addCombo(int length, int empty) {
+		int plainCredit = 0;
+		for (int i = 0; i < length; i++) {
+			plainCredit += scoring.getCreditFor(valueArray[i]);
+		}
+		int credit = scoring.getScore(plainCredit, empty == tokenCount, valueArray, length, cellMatrix, startX, startY);
+		metrics.offeredCount++;
+		if (outSink.add(credit, orientation, startX, startY, valueArray, length, plainCredit)) {
+			metrics.admittedCount++;
+		}
+		stopped = outSink.isDone();
+	}
+}
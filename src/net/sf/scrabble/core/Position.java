@@ -0,0 +1,154 @@
+package net.sf.scrabble.core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable snapshot of the board: the letters and cell caches of both
+ * orientations, which any number of solves can read at the same time. Cells
+ * are never changed once they are part of a snapshot; the board builds the
+ * next snapshot from new cells for the columns and lines that changed and
+ * shares the others.
+ * <p>
+ * The board keeps the anchors of each line, the cells a word has to cover to
+ * connect: occupied cells and empty cells next to one. Only the lines that
+ * changed get new anchors, so what depends on them scales with the tiles on
+ * the board rather than its area.
+ * <p>
+ * The allowed letter masks of the cells are also kept per line, in a row
+ * array of their own, which the scan reads without touching the cells.
+ * <p>
+ * Word ranges depend on the number of tokens as well, so they are computed on
+ * first use for each token count and kept alongside.
+ */
+final class Position {
+	private static final int HOR = Combo.OrientationType.HORIZONTAL.ordinal();
+	private static final int VER = Combo.OrientationType.VERTICAL.ordinal();
+	private static final int[] NO_STARTS = new int[0];
+	private final Cell[][][] cellMatrixArray;
+	// anchor columns per orientation and line, ascending
+	private final int[][][] anchorArray;
+	// allowed letter masks per orientation, line and column
+	private final long[][][] maskArray;
+	// the position hash of the board when the snapshot was taken
+	private final long hash;
+	// word ranges per token count, up to the longest line
+	private final AtomicReferenceArray<WordRanges> rangeArray;
+
+	/**
+	 * The shortest and longest word that can start at each cell, per
+	 * orientation, column and line; zero if none can. The start cells list the
+	 * columns where one can, per orientation and line, ascending.
+	 */
+	static final class WordRanges {
+		final int[][][] minMatrixArray = new int[2][][];
+		final int[][][] maxMatrixArray = new int[2][][];
+		final int[][][] startMatrixArray = new int[2][][];
+	}
+
+	Position(Cell[][][] cellMatrixArray, int[][][] anchorArray, long[][][] maskArray, long hash) {
+		this.cellMatrixArray = cellMatrixArray;
+		this.anchorArray = anchorArray;
+		this.maskArray = maskArray;
+		this.hash = hash;
+		int maxLength = Math.max(cellMatrixArray[HOR].length, cellMatrixArray[VER].length);
+		rangeArray = new AtomicReferenceArray<WordRanges>(maxLength + 1);
+	}
+
+	Cell[][] getCellMatrix(int orientation) {
+		return cellMatrixArray[orientation];
+	}
+
+	int[][] getAnchors(int orientation) {
+		return anchorArray[orientation];
+	}
+
+	long[][] getAllowedMasks(int orientation) {
+		return maskArray[orientation];
+	}
+
+	long getHash() {
+		return hash;
+	}
+
+	/**
+	 * The word ranges for the given number of tokens. Only the cells that can
+	 * reach an anchor with the tokens are looked at. Solves racing for the
+	 * same token count may both compute them, which is harmless.
+	 */
+	WordRanges getWordRanges(int tokenCount) {
+		int index = Math.min(Math.max(tokenCount, 0), rangeArray.length() - 1);
+		WordRanges result = rangeArray.get(index);
+		if (result == null) {
+			result = new WordRanges();
+			for (int o = HOR; o <= VER; o++) {
+				Cell[][] cellMatrix = cellMatrixArray[o];
+				int height = cellMatrix.length == 0 ? 0 : cellMatrix[0].length;
+				int[][] minMatrix = new int[cellMatrix.length][height];
+				int[][] maxMatrix = new int[cellMatrix.length][height];
+				int[][] startMatrix = new int[height][];
+				int[] candidateArray = new int[cellMatrix.length];
+				for (int y = 0; y < height; y++) {
+					// walk left from each anchor as far as the tokens reach; the
+					// cells left of the previous anchor were reached from there
+					int count = 0;
+					int previous = -1;
+					for (int a : anchorArray[o][y]) {
+						int empty = 0;
+						for (int x = a; x > previous; x--) {
+							if (cellMatrix[x][y].letter == Alphabet.EMPTY_VALUE && ++empty > index) {
+								break;
+							}
+							candidateArray[count++] = x;
+						}
+						previous = a;
+					}
+					Arrays.sort(candidateArray, 0, count);
+					int startCount = 0;
+					for (int i = 0; i < count; i++) {
+						int x = candidateArray[i];
+						refreshWordRange(x, y, index, cellMatrix, minMatrix, maxMatrix);
+						if (minMatrix[x][y] != 0) {
+							candidateArray[startCount++] = x;
+						}
+					}
+					startMatrix[y] = startCount == 0 ? NO_STARTS : Arrays.copyOf(candidateArray, startCount);
+				}
+				result.minMatrixArray[o] = minMatrix;
+				result.maxMatrixArray[o] = maxMatrix;
+				result.startMatrixArray[o] = startMatrix;
+			}
+			rangeArray.compareAndSet(index, null, result);
+		}
+		return result;
+	}
+
+	private static void refreshWordRange(int x, int y, int tokenCount, Cell[][] cellMatrix, int[][] minMatrix,
+			int[][] maxMatrix) {
+		Cell c = cellMatrix[x][y];
+		if (c.isNoBegin) {
+			return;
+		}
+		int maxWordLength = cellMatrix.length - x;
+		int empty = 0;
+		boolean connected = false;
+		for (int i = 0; i < maxWordLength; i++) {
+			Cell d = cellMatrix[x + i][y];
+			if (d.letter == Alphabet.EMPTY_VALUE) {
+				empty++;
+				if (empty > tokenCount) {
+					break;
+				}
+			}
+			if (!connected) {
+				connected = d.isYetConnected;
+			}
+			if (connected && !d.isNoEnd && empty > 0) {
+				maxMatrix[x][y] = i + 1;
+				if (minMatrix[x][y] == 0) {
+					minMatrix[x][y] = i + 1;
+				}
+			}
+		}
+	}
+}
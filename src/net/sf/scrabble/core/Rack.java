@@ -0,0 +1,88 @@
+package net.sf.scrabble.core;
+
+import java.util.Arrays;
+
+/**
+ * The tokens of a player, as a frequency per letter value with the number of
+ * letters in the last slot, and a number of jokers: the form the generators
+ * take them in.
+ */
+class Rack {
+	final int[] freqArray;
+	int jokerCount;
+
+	Rack(int alphabetSize) {
+		freqArray = new int[alphabetSize + 1];
+	}
+
+	Rack(String tokens, Alphabet alphabet) {
+		this(alphabet.getSize());
+		alphabet.checkLegalTokens(tokens);
+		jokerCount = alphabet.getFrequencyAndJoker(tokens, freqArray);
+	}
+
+	int size() {
+		return freqArray[freqArray.length - 1] + jokerCount;
+	}
+
+	void copyFrom(Rack rack) {
+		System.arraycopy(rack.freqArray, 0, freqArray, 0, freqArray.length);
+		jokerCount = rack.jokerCount;
+	}
+
+	void clear() {
+		Arrays.fill(freqArray, 0);
+		jokerCount = 0;
+	}
+
+	void add(int value) {
+		if (value == Alphabet.JOKER_VALUE) {
+			jokerCount++;
+		} else {
+			freqArray[value]++;
+			freqArray[freqArray.length - 1]++;
+		}
+	}
+
+	/**
+	 * The credits of the letters; jokers have none.
+	 */
+	int getCredits(Scoring scoring) {
+		int result = 0;
+		for (int v = 0; v < freqArray.length - 1; v++) {
+			result += freqArray[v] * scoring.getCreditFor(v);
+		}
+		return result;
+	}
+
+	/**
+	 * Takes out the tiles a combo places on the board, before it is applied;
+	 * letters the rack has none of were jokers. The tokens taken out go into
+	 * the token array, if not null, and their number is answered.
+	 */
+	int removePlaced(Combo combo, Board board, int[] tokenArray) {
+		Alphabet alphabet = board.getAlphabet();
+		int dx = combo.isHorizontal() ? 1 : 0;
+		int dy = 1 - dx;
+		int[] array = combo.word.valueArray;
+		int count = 0;
+		for (int i = 0; i < array.length; i++) {
+			int code = board.getCode(combo.coord.x + i * dx, combo.coord.y + i * dy);
+			if (code != alphabet.getEmptyCode() && code != alphabet.getJokerCode()) {
+				continue;
+			}
+			int token = freqArray[array[i]] > 0 ? array[i] : Alphabet.JOKER_VALUE;
+			if (token == Alphabet.JOKER_VALUE) {
+				jokerCount--;
+			} else {
+				freqArray[token]--;
+				freqArray[freqArray.length - 1]--;
+			}
+			if (tokenArray != null) {
+				tokenArray[count] = token;
+			}
+			count++;
+		}
+		return count;
+	}
+}
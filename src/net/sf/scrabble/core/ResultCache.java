@@ -0,0 +1,68 @@
+package net.sf.scrabble.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * A thread-safe cache of solve results, keyed by dictionary, position hash,
+ * token frequency, joker count and number of results, so boards of the same
+ * locale share the results of the positions they have seen. The least recently
+ * used entries are evicted once the number of combos held, plus a fixed
+ * overhead per entry, exceeds the maximum weight. Dictionaries are only held
+ * weakly, and their entries dropped once they are reclaimed.
+ */
+public class ResultCache extends WeightedCache<ResultCache.Key, Set<Combo>> {
+	public static final long DEFAULT_MAX_WEIGHT = 1 << 17;
+	private static final int ENTRY_WEIGHT = 16;
+
+	/**
+	 * The dictionary and position hash, with the token frequencies followed by
+	 * the joker count and the number of results; tokens in any order give the
+	 * same key.
+	 */
+	static class Key extends DictionaryKey {
+		private long positionHash;
+		private int[] rackArray;
+		private int capacity;
+		private int hash;
+
+		Key(Dictionary dictionary, long positionHash, int[] freqArray, int jokerCount, int capacity,
+				ReferenceQueue<Object> queue) {
+			super(dictionary, queue);
+			this.positionHash = positionHash;
+			this.capacity = capacity;
+			rackArray = Arrays.copyOf(freqArray, freqArray.length + 1);
+			rackArray[freqArray.length] = jokerCount;
+			hash = ((System.identityHashCode(dictionary) * 31 + (int) (positionHash ^ positionHash >>> 32)) * 31
+					+ Arrays.hashCode(rackArray)) * 31 + capacity;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && isSameDictionary(other) && positionHash == other.positionHash
+					&& capacity == other.capacity && Arrays.equals(rackArray, other.rackArray);
+		}
+	}
+
+	public ResultCache() {
+		super(DEFAULT_MAX_WEIGHT);
+	}
+
+	@Override
+	protected long weigh(Set<Combo> comboSet) {
+		return ENTRY_WEIGHT + comboSet.size();
+	}
+}
@@ -0,0 +1,253 @@
+package net.sf.scrabble.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The best combos found so far, up to a fixed number, kept as a heap over
+ * parallel primitive arrays with the worst combo on top. Combos are ordered by
+ * credits and then by orientation, position and word, so the kept combos do
+ * not depend on the order in which they are added, and heaps filled in
+ * parallel can be merged into the same result.
+ * <p>
+ * Slot 0 is scratch space for a candidate; the heap occupies slots 1 up to
+ * and including size. Rejecting a candidate allocates nothing.
+ */
+class ResultHeap implements ComboSink {
+	private static final Combo.OrientationType[] ORIENTATIONS = Combo.OrientationType.values();
+	private static final int INITIAL_SLOTS = 16;
+	private int capacity;
+	private int size;
+	private int[] creditArray;
+	private int[] orientationArray;
+	private int[] xArray;
+	private int[] yArray;
+	private int[] lengthArray;
+	private int[] plainCreditArray;
+	private int[][] valueMatrix;
+
+	public ResultHeap(int capacity) {
+		this.capacity = capacity;
+		int slots = (int) Math.min((long) capacity + 1, INITIAL_SLOTS);
+		creditArray = new int[slots];
+		orientationArray = new int[slots];
+		xArray = new int[slots];
+		yArray = new int[slots];
+		lengthArray = new int[slots];
+		plainCreditArray = new int[slots];
+		valueMatrix = new int[slots][];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * The credits a candidate needs at least to be admitted; once the heap is
+	 * full, a candidate with these credits is only admitted if it wins the tie
+	 * with the worst combo kept.
+	 */
+	public int getThreshold() {
+		if (size < capacity) {
+			return Integer.MIN_VALUE;
+		}
+		return capacity == 0 ? Integer.MAX_VALUE : creditArray[1];
+	}
+
+	/**
+	 * Offers a candidate, given in the line coordinates of its orientation:
+	 * position along the line and line index. The first length values of the
+	 * value array are copied if it is admitted.
+	 */
+	public boolean add(int credit, int orientation, int position, int line, int[] valueArray, int length,
+			int plainCredit) {
+		if (capacity == 0 || credit < getThreshold()) {
+			return false;
+		}
+		boolean horizontal = orientation == Combo.OrientationType.HORIZONTAL.ordinal();
+		set(0, credit, orientation, horizontal ? position : line, horizontal ? line : position, valueArray, length,
+				plainCredit);
+		return admit();
+	}
+
+	/**
+	 * A heap takes all the combos offered and keeps the best.
+	 */
+	public boolean isDone() {
+		return false;
+	}
+
+	/**
+	 * Adds the combos of another heap, as if they had been offered to this one.
+	 */
+	public void merge(ResultHeap other) {
+		if (capacity == 0) {
+			return;
+		}
+		for (int i = 1; i <= other.size; i++) {
+			if (other.creditArray[i] < getThreshold()) {
+				continue;
+			}
+			set(0, other.creditArray[i], other.orientationArray[i], other.xArray[i], other.yArray[i],
+					other.valueMatrix[i], other.lengthArray[i], other.plainCreditArray[i]);
+			admit();
+		}
+	}
+
+	/**
+	 * The kept combos, best first.
+	 */
+	public Set<Combo> toSet() {
+		Integer[] slotArray = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			slotArray[i] = Integer.valueOf(i + 1);
+		}
+		Arrays.sort(slotArray, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return ResultHeap.this.compare(a.intValue(), b.intValue());
+			}
+		});
+		Set<Combo> result = new LinkedHashSet<Combo>();
+		for (Integer slot : slotArray) {
+			int i = slot.intValue();
+			Word word = new Word(Arrays.copyOf(valueMatrix[i], lengthArray[i]), plainCreditArray[i]);
+			result.add(new Combo(word, new Coord(xArray[i], yArray[i]), creditArray[i],
+					ORIENTATIONS[orientationArray[i]]));
+		}
+		return result;
+	}
+
+	/**
+	 * Moves the candidate in slot 0 into the heap, either in a free slot or in
+	 * place of the worst combo if it beats that.
+	 */
+	private boolean admit() {
+		if (size < capacity) {
+			size++;
+			if (size == creditArray.length) {
+				grow();
+			}
+			swap(0, size);
+			siftUp(size);
+			return true;
+		}
+		if (compare(0, 1) >= 0) {
+			return false;
+		}
+		swap(0, 1);
+		siftDown(1);
+		return true;
+	}
+
+	private void set(int i, int credit, int orientation, int x, int y, int[] valueArray, int length,
+			int plainCredit) {
+		creditArray[i] = credit;
+		orientationArray[i] = orientation;
+		xArray[i] = x;
+		yArray[i] = y;
+		lengthArray[i] = length;
+		plainCreditArray[i] = plainCredit;
+		if (valueMatrix[i] == null || valueMatrix[i].length < length) {
+			valueMatrix[i] = new int[Math.max(length, INITIAL_SLOTS)];
+		}
+		System.arraycopy(valueArray, 0, valueMatrix[i], 0, length);
+	}
+
+	private void grow() {
+		int slots = (int) Math.min((long) capacity + 1, creditArray.length * 2L);
+		creditArray = Arrays.copyOf(creditArray, slots);
+		orientationArray = Arrays.copyOf(orientationArray, slots);
+		xArray = Arrays.copyOf(xArray, slots);
+		yArray = Arrays.copyOf(yArray, slots);
+		lengthArray = Arrays.copyOf(lengthArray, slots);
+		plainCreditArray = Arrays.copyOf(plainCreditArray, slots);
+		valueMatrix = Arrays.copyOf(valueMatrix, slots);
+	}
+
+	private void siftUp(int i) {
+		while (i > 1 && compare(i / 2, i) < 0) {
+			swap(i / 2, i);
+			i /= 2;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int worst = i;
+			int left = i * 2;
+			if (left <= size && compare(left, worst) > 0) {
+				worst = left;
+			}
+			if (left + 1 <= size && compare(left + 1, worst) > 0) {
+				worst = left + 1;
+			}
+			if (worst == i) {
+				return;
+			}
+			swap(i, worst);
+			i = worst;
+		}
+	}
+
+	/**
+	 * Negative if slot a holds the better combo: more credits, then
+	 * horizontal first, then by row, column and word.
+	 */
+	private int compare(int a, int b) {
+		int diff = creditArray[b] - creditArray[a];
+		if (diff != 0) {
+			return diff;
+		}
+		diff = orientationArray[a] - orientationArray[b];
+		if (diff != 0) {
+			return diff;
+		}
+		diff = yArray[a] - yArray[b];
+		if (diff != 0) {
+			return diff;
+		}
+		diff = xArray[a] - xArray[b];
+		if (diff != 0) {
+			return diff;
+		}
+		int[] x = valueMatrix[a];
+		int[] y = valueMatrix[b];
+		int length = Math.min(lengthArray[a], lengthArray[b]);
+		for (int i = 0; i < length; i++) {
+			if (x[i] != y[i]) {
+				return x[i] - y[i];
+			}
+		}
+		return lengthArray[a] - lengthArray[b];
+	}
+
+	private void swap(int a, int b) {
+		int t = creditArray[a];
+		creditArray[a] = creditArray[b];
+		creditArray[b] = t;
+		t = orientationArray[a];
+		orientationArray[a] = orientationArray[b];
+		orientationArray[b] = t;
+		t = xArray[a];
+		xArray[a] = xArray[b];
+		xArray[b] = t;
+		t = yArray[a];
+		yArray[a] = yArray[b];
+		yArray[b] = t;
+		t = lengthArray[a];
+		lengthArray[a] = lengthArray[b];
+		lengthArray[b] = t;
+		t = plainCreditArray[a];
+		plainCreditArray[a] = plainCreditArray[b];
+		plainCreditArray[b] = t;
+		int[] values = valueMatrix[a];
+		valueMatrix[a] = valueMatrix[b];
+		valueMatrix[b] = values;
+	}
+}
@@ -0,0 +1,163 @@
+package net.sf.scrabble.core;
+
+import java.util.Arrays;
+
+/**
+ * Optimistic scores for the words that start at a cell, so the generators can
+ * skip what cannot beat the results kept so far. Fixed letters count as they
+ * are, the highest credit tokens of the rack go on the best letter bonuses of
+ * the cells to fill, and the bonus for using all tokens is added if the word
+ * would. Credits and bonuses are assumed not to be negative, so a longer word
+ * never has a lower bound.
+ */
+class ScoreBound {
+	private Scoring scoring;
+	// credits of the tokens, best first; jokers count as the best letter
+	private int[] tokenCreditArray;
+	private int tokenCount;
+	// letter bonus factor per cell to fill, best first
+	private int[] factorArray;
+	private int maxLength;
+	// per length
+	private int[] boundArray;
+	private int[] extraArray;
+	private int[] wordFactorArray;
+	// per position, the bound of the cells from there up to the maximum length
+	private int[] suffixArray;
+
+	public ScoreBound(Scoring scoring, int lineLength) {
+		this.scoring = scoring;
+		factorArray = new int[lineLength];
+		boundArray = new int[lineLength + 1];
+		extraArray = new int[lineLength + 1];
+		wordFactorArray = new int[lineLength + 1];
+		suffixArray = new int[lineLength + 1];
+	}
+
+	public void setTokens(int[] freqArray, int jokerCount) {
+		int valueCount = freqArray.length - 1;
+		int jokerCredit = 0;
+		for (int v = 0; v < valueCount; v++) {
+			jokerCredit = Math.max(jokerCredit, scoring.getCreditFor(v));
+		}
+		tokenCount = freqArray[valueCount] + jokerCount;
+		if (tokenCreditArray == null || tokenCreditArray.length < tokenCount) {
+			tokenCreditArray = new int[tokenCount];
+		}
+		int i = 0;
+		for (int v = 0; v < valueCount; v++) {
+			for (int f = 0; f < freqArray[v]; f++) {
+				tokenCreditArray[i++] = scoring.getCreditFor(v);
+			}
+		}
+		for (int j = 0; j < jokerCount; j++) {
+			tokenCreditArray[i++] = jokerCredit;
+		}
+		Arrays.sort(tokenCreditArray, 0, tokenCount);
+		for (int a = 0, b = tokenCount - 1; a < b; a++, b--) {
+			int t = tokenCreditArray[a];
+			tokenCreditArray[a] = tokenCreditArray[b];
+			tokenCreditArray[b] = t;
+		}
+	}
+
+	/**
+	 * Computes the bounds for the words up to the given length from position x
+	 * on line y.
+	 */
+	public void compute(Cell[][] cellMatrix, int x, int y, int maxLength) {
+		this.maxLength = maxLength;
+		int fixedCredit = 0;
+		int wordFactor = 1;
+		int empty = 0;
+		int fillCount = 0;
+		for (int l = 1; l <= maxLength; l++) {
+			Cell c = cellMatrix[x + l - 1][y];
+			if (isToFill(c)) {
+				if (c.letter == Alphabet.EMPTY_VALUE) {
+					empty++;
+					if (c.bonus > 0) {
+						wordFactor *= c.bonus;
+					}
+				}
+				insertFactor(fillCount++, getLetterFactor(c));
+			} else {
+				fixedCredit += scoring.getCreditFor(c.letter);
+			}
+			int tokenCredit = 0;
+			int extra = 0;
+			for (int i = 0; i < fillCount && i < tokenCount; i++) {
+				tokenCredit += tokenCreditArray[i];
+				extra += (factorArray[i] - 1) * tokenCreditArray[i];
+			}
+			int usedAll = empty == tokenCount ? scoring.getBonusForUsingAll() : 0;
+			extraArray[l] = extra + usedAll;
+			wordFactorArray[l] = wordFactor;
+			boundArray[l] = (fixedCredit + tokenCredit + extra + usedAll) * wordFactor;
+		}
+		// the same for the cells from each position on, up to the maximum length
+		int usedAll = empty == tokenCount ? scoring.getBonusForUsingAll() : 0;
+		fixedCredit = 0;
+		fillCount = 0;
+		suffixArray[maxLength] = usedAll;
+		for (int p = maxLength - 1; p >= 0; p--) {
+			Cell c = cellMatrix[x + p][y];
+			if (isToFill(c)) {
+				insertFactor(fillCount++, getLetterFactor(c));
+			} else {
+				fixedCredit += scoring.getCreditFor(c.letter);
+			}
+			int credit = fixedCredit + usedAll;
+			for (int i = 0; i < fillCount && i < tokenCount; i++) {
+				credit += factorArray[i] * tokenCreditArray[i];
+			}
+			suffixArray[p] = credit;
+		}
+	}
+
+	/**
+	 * The bound for words of the given length.
+	 */
+	public int getBound(int length) {
+		return boundArray[length];
+	}
+
+	/**
+	 * The best bound for words of the given length or longer.
+	 */
+	public int getBestFrom(int length) {
+		return length > maxLength ? Integer.MIN_VALUE : boundArray[maxLength];
+	}
+
+	/**
+	 * The bound for a word of the given length and plain credits.
+	 */
+	public int getWordBound(int length, int plainCredit) {
+		return (plainCredit + extraArray[length]) * wordFactorArray[length];
+	}
+
+	/**
+	 * The bound for any word that starts with the given number of letters,
+	 * which earn the given credits including their letter bonuses.
+	 */
+	public int getPrefixBound(int depth, int prefixCredit) {
+		return (prefixCredit + suffixArray[depth]) * wordFactorArray[maxLength];
+	}
+
+	private void insertFactor(int count, int factor) {
+		int i = count;
+		while (i > 0 && factorArray[i - 1] < factor) {
+			factorArray[i] = factorArray[i - 1];
+			i--;
+		}
+		factorArray[i] = factor;
+	}
+
+	private static boolean isToFill(Cell c) {
+		return c.letter == Alphabet.EMPTY_VALUE || c.letter == Alphabet.JOKER_VALUE;
+	}
+
+	static int getLetterFactor(Cell c) {
+		return c.letter == Alphabet.EMPTY_VALUE && c.bonus < 0 ? -c.bonus : 1;
+	}
+}
@@ -1,46 +1,82 @@
 package net.sf.scrabble.core;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * Credit per letter value and bonus per board position, kept in dense tables
+ * that grow as entries are added.
+ */
 public class Scoring {
 	public static int DEFAULT_CREDIT = 1;
 	public static int DEFAULT_BONUS = 0;
-	private Map<Integer, Integer> creditMap = new HashMap<Integer, Integer>();
-	private Map<Coord, Integer> bonusMap = new HashMap<Coord, Integer>();
+	private int[] creditArray = new int[0];
+	// bonus per column, per row
+	private int[][] bonusMatrix = new int[0][];
 	private int bonusForUsingAll;
 	
+	/**
+	 * Sets the credit of a letter value. Only letters have credits of their
+	 * own, so the value must not be negative; other values score
+	 * {@link #DEFAULT_CREDIT}.
+	 */
 	public void addCredit(int value, int credit) {
-		creditMap.put(Integer.valueOf(value), Integer.valueOf(credit));
+		if (value < 0) {
+			throw new IllegalArgumentException("Not a letter value: " + value);
+		}
+		if (value >= creditArray.length) {
+			int length = creditArray.length;
+			creditArray = Arrays.copyOf(creditArray, value + 1);
+			Arrays.fill(creditArray, length, value, DEFAULT_CREDIT);
+		}
+		creditArray[value] = credit;
 	}
 
+	/**
+	 * Sets the bonus of a board position, which must not be negative; other
+	 * positions have {@link #DEFAULT_BONUS}.
+	 */
 	public void addBonus(Coord coord, int bonus) {
-		bonusMap.put(new Coord(coord), Integer.valueOf(bonus));
+		if (coord.x < 0 || coord.y < 0) {
+			throw new IllegalArgumentException("Not a board position: " + coord);
+		}
+		if (coord.x >= bonusMatrix.length) {
+			bonusMatrix = Arrays.copyOf(bonusMatrix, coord.x + 1);
+		}
+		int[] column = bonusMatrix[coord.x];
+		if (column == null || coord.y >= column.length) {
+			int length = column == null ? 0 : column.length;
+			column = column == null ? new int[coord.y + 1] : Arrays.copyOf(column, coord.y + 1);
+			Arrays.fill(column, length, coord.y, DEFAULT_BONUS);
+			bonusMatrix[coord.x] = column;
+		}
+		column[coord.y] = bonus;
 	}
 
-	public int getScore(Word word, boolean usedAll, List<Cell> cellList) {
-		int credit = word.plainCredit;
+	/**
+	 * Scores the first length values of a value array laid out on line y of a
+	 * cell matrix from position x on, without allocating.
+	 */
+	int getScore(int plainCredit, boolean usedAll, int[] valueArray, int length, Cell[][] cellMatrix, int x, int y) {
+		int credit = plainCredit;
 		if (usedAll) {
 			credit += bonusForUsingAll;
 		}
-		int i = 0;
-		for (Cell d : cellList) {
-			if (d.letter == Alphabet.EMPTY_VALUE && d.bonus < 0) {
-				credit += (-d.bonus - 1) * getCreditFor(word.valueArray[i]);
+		int factor = 1;
+		for (int i = 0; i < length; i++) {
+			Cell d = cellMatrix[x + i][y];
+			if (d.letter == Alphabet.EMPTY_VALUE) {
+				if (d.bonus < 0) {
+					credit += (-d.bonus - 1) * getCreditFor(valueArray[i]);
+				} else if (d.bonus > 0) {
+					factor *= d.bonus;
+				}
 			}
-            i++;
 		}
-		for (Cell d : cellList) {
-			if (d.letter == Alphabet.EMPTY_VALUE && d.bonus > 0) {
-				credit *= d.bonus;
-			}
-		}
-		return credit;
+		return credit * factor;
 	}
 
-	public int getScore(Word word, int value, int bonus) {
-		int wordCredit = word.plainCredit;
+	public int getScore(int plainCredit, int value, int bonus) {
+		int wordCredit = plainCredit;
 		if (bonus < 0) {
 			wordCredit += (-bonus - 1) * getCreditFor(value);
 		} else if (bonus > 0) {
@@ -50,19 +86,21 @@ public class Scoring {
 	}
 
 	public int getBonusFor(Coord coord) {
-		Integer boxed = bonusMap.get(coord);
-		if (boxed == null) {
+		return getBonusFor(coord.x, coord.y);
+	}
+
+	public int getBonusFor(int x, int y) {
+		if (x < 0 || x >= bonusMatrix.length || bonusMatrix[x] == null || y < 0 || y >= bonusMatrix[x].length) {
 			return DEFAULT_BONUS;
 		}
-		return boxed.intValue();
+		return bonusMatrix[x][y];
 	}
 
 	public int getCreditFor(int value) {
-		Integer boxed = creditMap.get(Integer.valueOf(value));
-		if (boxed == null) {
+		if (value < 0 || value >= creditArray.length) {
 			return DEFAULT_CREDIT;
 		}
-		return boxed.intValue();
+		return creditArray[value];
 	}
 
 	public int getBonusForUsingAll() {
@@ -0,0 +1,114 @@
+package net.sf.scrabble.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The words of a dictionary grouped per length by letter mask, so that a whole
+ * group can be rejected against a set of tokens with a single mask test.
+ * Letter values beyond 63 share mask bits, which only weakens the test.
+ */
+class SignatureIndex {
+	private WordStore store;
+	private Bucket[] bucketArray;
+
+	private static class Bucket {
+		private long[] maskArray;
+		private int[] groupStartArray;
+		private int[] wordArray;
+	}
+
+	public SignatureIndex(Dictionary dictionary) {
+		store = dictionary.getStore();
+		bucketArray = new Bucket[dictionary.getMaxLength() + 1];
+		for (int length = 0; length < bucketArray.length; length++) {
+			int count = dictionary.getWordCount(length);
+			if (count == 0) {
+				continue;
+			}
+			Integer[] sortArray = new Integer[count];
+			final long[] wordMaskArray = new long[count];
+			for (int i = 0; i < count; i++) {
+				sortArray[i] = Integer.valueOf(i);
+				wordMaskArray[i] = store.getLetterMask(dictionary.getWord(length, i));
+			}
+			Arrays.sort(sortArray, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					long x = wordMaskArray[a.intValue()];
+					long y = wordMaskArray[b.intValue()];
+					return x < y ? -1 : (x == y ? 0 : 1);
+				}
+			});
+			Bucket bucket = new Bucket();
+			bucket.wordArray = new int[count];
+			int groupCount = 0;
+			for (int i = 0; i < count; i++) {
+				bucket.wordArray[i] = dictionary.getWord(length, sortArray[i].intValue());
+				if (i == 0 || wordMaskArray[sortArray[i].intValue()] != wordMaskArray[sortArray[i - 1].intValue()]) {
+					groupCount++;
+				}
+			}
+			bucket.maskArray = new long[groupCount];
+			bucket.groupStartArray = new int[groupCount + 1];
+			int group = 0;
+			for (int i = 0; i < count; i++) {
+				long mask = wordMaskArray[sortArray[i].intValue()];
+				if (i == 0 || mask != bucket.maskArray[group - 1]) {
+					bucket.maskArray[group] = mask;
+					bucket.groupStartArray[group] = i;
+					group++;
+				}
+			}
+			bucket.groupStartArray[groupCount] = count;
+			bucketArray[length] = bucket;
+		}
+	}
+
+	public int getMaxLength() {
+		return bucketArray.length - 1;
+	}
+
+	public boolean hasLength(int length) {
+		return length < bucketArray.length && bucketArray[length] != null;
+	}
+
+	/**
+	 * The words of a length that can be made out of the tokens, as indices
+	 * into the store.
+	 */
+	public int[] filter(int length, int[] freqArray, int jokerCount) {
+		Bucket bucket = length < bucketArray.length ? bucketArray[length] : null;
+		if (bucket == null) {
+			return new int[0];
+		}
+		int[] result = new int[16];
+		int size = 0;
+		int[] countArray = new int[store.getAlphabetSize()];
+		long missingMask = ~maskOf(freqArray);
+		for (int g = 0; g < bucket.maskArray.length; g++) {
+			if (Long.bitCount(bucket.maskArray[g] & missingMask) > jokerCount) {
+				continue;
+			}
+			for (int i = bucket.groupStartArray[g]; i < bucket.groupStartArray[g + 1]; i++) {
+				int word = bucket.wordArray[i];
+				if (store.canBeMadeOutOf(word, freqArray, jokerCount, countArray)) {
+					if (size == result.length) {
+						result = Arrays.copyOf(result, size * 2);
+					}
+					result[size++] = word;
+				}
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static long maskOf(int[] freqArray) {
+		long result = 0;
+		for (int i = 0; i < freqArray.length - 1; i++) {
+			if (freqArray[i] > 0) {
+				result |= 1L << i;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,357 @@
+package net.sf.scrabble.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ranks the best scoring combos of a rack by equity rather than by credits
+ * alone. Each candidate is played out a number of times on a board of its
+ * own: the opponent draws a rack from the unseen tiles, both sides refill and
+ * play their best scoring combo in turn for the given number of plies, and
+ * the playout yields the credits of the candidate and our replies minus those
+ * of the opponent. Candidates are then ranked by the mean of their playouts;
+ * any the budget left without a playout go last, by credits.
+ * <p>
+ * Playouts run on a thread per core until the time budget is spent, taking
+ * the candidates in turn so they all get about the same number. The unseen
+ * tiles are the tile distribution minus the position and the rack; letters
+ * on the board beyond their count are taken to be jokers.
+ */
+public class Simulator {
+	public static final int DEFAULT_CANDIDATES = 10;
+	public static final int DEFAULT_PLIES = 2;
+	public static final int RACK_SIZE = 7;
+	// the normal quantile for a 95% confidence interval
+	private static final double Z_95 = 1.96;
+	private Board board;
+	private TileBag distribution;
+	private int candidateCount = DEFAULT_CANDIDATES;
+	private int plyCount = DEFAULT_PLIES;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	private long seed = System.nanoTime();
+
+	/**
+	 * A candidate and the statistics of its playouts.
+	 */
+	public static class Equity {
+		private final Combo combo;
+		private int count;
+		private double sum;
+		private double sumOfSquares;
+
+		Equity(Combo combo) {
+			this.combo = combo;
+		}
+
+		void add(double value) {
+			count++;
+			sum += value;
+			sumOfSquares += value * value;
+		}
+
+		void add(Equity other) {
+			count += other.count;
+			sum += other.sum;
+			sumOfSquares += other.sumOfSquares;
+		}
+
+		public Combo getCombo() {
+			return combo;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * The mean score differential of the playouts, or NaN without any.
+		 */
+		public double getMean() {
+			return count == 0 ? Double.NaN : sum / count;
+		}
+
+		public double getStandardDeviation() {
+			if (count < 2) {
+				return 0;
+			}
+			double mean = sum / count;
+			return Math.sqrt(Math.max(sumOfSquares - count * mean * mean, 0) / (count - 1));
+		}
+
+		/**
+		 * Half the width of the 95% confidence interval of the mean.
+		 */
+		public double getConfidence() {
+			return count < 2 ? Double.POSITIVE_INFINITY : Z_95 * getStandardDeviation() / Math.sqrt(count);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Equity(credits:%d mean:%.1f +-%.1f playouts:%d)", Integer.valueOf(combo.getCredits()),
+					Double.valueOf(getMean()), Double.valueOf(getConfidence()), Integer.valueOf(count));
+		}
+	}
+
+	/**
+	 * The candidates of a simulation, best equity first, and its throughput.
+	 */
+	public static class Result {
+		private final List<Equity> equityList;
+		private final long playoutCount;
+		private final long elapsedNanos;
+
+		Result(List<Equity> equityList, long playoutCount, long elapsedNanos) {
+			this.equityList = equityList;
+			this.playoutCount = playoutCount;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public List<Equity> getEquityList() {
+			return equityList;
+		}
+
+		public long getPlayoutCount() {
+			return playoutCount;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getPlayoutsPerSecond() {
+			return elapsedNanos == 0 ? 0 : playoutCount * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Simulation(candidates:%d playouts:%d ms:%d playouts/s:%.0f)",
+					Integer.valueOf(equityList.size()), Long.valueOf(playoutCount),
+					Long.valueOf(elapsedNanos / 1000000), Double.valueOf(getPlayoutsPerSecond()));
+		}
+	}
+
+	/**
+	 * What all playouts of a simulation start from.
+	 */
+	class Setup {
+		final List<Combo> candidateList;
+		final Rack[] leaveArray;
+		final TileBag unseen;
+		final int[][] codeMatrix;
+
+		Setup(String tokens) {
+			Alphabet alphabet = board.getAlphabet();
+			codeMatrix = new int[board.getWidth()][board.getHeight()];
+			for (int x = 0; x < codeMatrix.length; x++) {
+				for (int y = 0; y < codeMatrix[x].length; y++) {
+					codeMatrix[x][y] = board.getCode(x, y);
+				}
+			}
+			unseen = new TileBag(distribution);
+			unseen.removeBoard(board);
+			unseen.removeTokens(tokens, alphabet);
+			candidateList = new ArrayList<Combo>(board.solveAll(Collections.singletonList(tokens), candidateCount)
+					.get(0));
+			leaveArray = new Rack[candidateList.size()];
+			for (int i = 0; i < leaveArray.length; i++) {
+				leaveArray[i] = new Rack(alphabet.getSize());
+				leaveArray[i].jokerCount = alphabet.getFrequencyAndJoker(tokens, leaveArray[i].freqArray);
+				leaveArray[i].removePlaced(candidateList.get(i), board, null);
+			}
+		}
+	}
+
+	/**
+	 * The board, bag and racks of the playouts on one thread.
+	 */
+	class Playout {
+		private final Setup setup;
+		private final Board playBoard;
+		private final Random random;
+		private final TileBag bag;
+		private final Rack ownRack;
+		private final Rack otherRack;
+
+		Playout(Setup setup, long playoutSeed) {
+			this.setup = setup;
+			playBoard = new Board(board.getWidth(), board.getHeight(), board.getDictionary(), board.getAlphabet(),
+					board.getScoring());
+			playBoard.setGeneratorType(board.getGeneratorType());
+			playBoard.setMaxNumberOfResults(1);
+			random = new Random(playoutSeed);
+			bag = new TileBag(setup.unseen);
+			ownRack = new Rack(board.getAlphabet().getSize());
+			otherRack = new Rack(board.getAlphabet().getSize());
+		}
+
+		int getCandidateCount() {
+			return setup.candidateList.size();
+		}
+
+		/**
+		 * Plays out a candidate and answers the score differential.
+		 */
+		double play(int candidate) {
+			for (int x = 0; x < setup.codeMatrix.length; x++) {
+				for (int y = 0; y < setup.codeMatrix[x].length; y++) {
+					if (playBoard.getCode(x, y) != setup.codeMatrix[x][y]) {
+						playBoard.setCode(x, y, setup.codeMatrix[x][y]);
+					}
+				}
+			}
+			bag.copyFrom(setup.unseen);
+			ownRack.copyFrom(setup.leaveArray[candidate]);
+			otherRack.clear();
+			Combo combo = setup.candidateList.get(candidate);
+			playBoard.applyCombo(combo);
+			int result = combo.getCredits();
+			for (int ply = 0; ply < plyCount; ply++) {
+				boolean isOther = ply % 2 == 0;
+				Rack rack = isOther ? otherRack : ownRack;
+				while (rack.size() < RACK_SIZE && bag.size() > 0) {
+					rack.add(bag.draw(random));
+				}
+				if (rack.size() == 0) {
+					break;
+				}
+				ResultHeap heap = playBoard.collect(rack.freqArray, rack.jokerCount);
+				if (heap.size() == 0) {
+					// no combo: pass
+					continue;
+				}
+				Combo reply = heap.toSet().iterator().next();
+				rack.removePlaced(reply, playBoard, null);
+				playBoard.applyCombo(reply);
+				result += isOther ? -reply.getCredits() : reply.getCredits();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * A simulator for positions of the given board, with the tile distribution
+	 * of its locale.
+	 */
+	public Simulator(Board board, TileBag distribution) {
+		this.board = board;
+		this.distribution = distribution;
+	}
+
+	/**
+	 * Simulates the best scoring candidates of the rack on the current
+	 * position for about the given time, and answers them best equity first.
+	 */
+	public Result simulate(String tokens, long budgetMillis) {
+		long start = System.nanoTime();
+		final long deadline = start + budgetMillis * 1000000;
+		final Setup setup = new Setup(tokens);
+		final int size = setup.candidateList.size();
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService service = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread result = new Thread(r, "simulator");
+				result.setDaemon(true);
+				return result;
+			}
+		});
+		List<Future<Equity[]>> futureList = new ArrayList<Future<Equity[]>>();
+		try {
+			for (int t = 0; t < threadCount && size > 0; t++) {
+				final long playoutSeed = seed + t;
+				futureList.add(service.submit(new Callable<Equity[]>() {
+					public Equity[] call() {
+						Playout playout = new Playout(setup, playoutSeed);
+						Equity[] result = new Equity[size];
+						for (int i = 0; i < size; i++) {
+							result[i] = new Equity(setup.candidateList.get(i));
+						}
+						while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+							// the counter wraps to negative on long runs
+							int candidate = Math.floorMod(next.getAndIncrement(), size);
+							result[candidate].add(playout.play(candidate));
+						}
+						return result;
+					}
+				}));
+			}
+			List<Equity> equityList = new ArrayList<Equity>();
+			for (int i = 0; i < size; i++) {
+				equityList.add(new Equity(setup.candidateList.get(i)));
+			}
+			long playoutCount = 0;
+			for (Future<Equity[]> future : futureList) {
+				Equity[] part = future.get();
+				for (int i = 0; i < size; i++) {
+					equityList.get(i).add(part[i]);
+					playoutCount += part[i].getCount();
+				}
+			}
+			// candidates without playouts have no mean; they go last, by credits
+			Collections.sort(equityList, new Comparator<Equity>() {
+				public int compare(Equity a, Equity b) {
+					if (a.getCount() == 0 || b.getCount() == 0) {
+						if (a.getCount() != b.getCount()) {
+							return a.getCount() == 0 ? 1 : -1;
+						}
+						return b.getCombo().getCredits() - a.getCombo().getCredits();
+					}
+					return Double.compare(b.getMean(), a.getMean());
+				}
+			});
+			return new Result(equityList, playoutCount, System.nanoTime() - start);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while simulating", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unable to simulate", e.getCause());
+		} finally {
+			service.shutdownNow();
+		}
+	}
+
+	/**
+	 * The playouts of the candidates of the rack on the calling thread, to
+	 * measure them one at a time.
+	 */
+	Playout createPlayout(String tokens, long playoutSeed) {
+		return new Playout(new Setup(tokens), playoutSeed);
+	}
+
+	public int getCandidateCount() {
+		return candidateCount;
+	}
+
+	public void setCandidateCount(int candidateCount) {
+		this.candidateCount = candidateCount;
+	}
+
+	public int getPlyCount() {
+		return plyCount;
+	}
+
+	public void setPlyCount(int plyCount) {
+		this.plyCount = plyCount;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
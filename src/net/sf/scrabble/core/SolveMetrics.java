@@ -0,0 +1,164 @@
+package net.sf.scrabble.core;
+
+/**
+ * What a single solve did and how long each phase took. A solve fills in its
+ * own metrics, so they need no synchronization; when it is done they are added
+ * to the process-wide {@link SolverStats}.
+ * <p>
+ * The cell cache phases only take time in the solve that finds the position
+ * changed; other solves of the same position share its snapshot.
+ */
+public class SolveMetrics {
+	long creditCacheNanos;
+	long flagsNanos;
+	long wordRangeNanos;
+	long collectNanos;
+	long totalNanos;
+	long examinedCount;
+	long boundRejectCount;
+	long crossCheckRejectCount;
+	long rackRejectCount;
+	long offeredCount;
+	long admittedCount;
+	long filterHitCount;
+	long filterMissCount;
+	long resultCacheHitCount;
+	long resultCacheMissCount;
+	int resultCount;
+
+	/**
+	 * Time spent on the cross checks of the cells that changed.
+	 */
+	public long getCreditCacheNanos() {
+		return creditCacheNanos;
+	}
+
+	/**
+	 * Time spent on the begin, end and connection flags of the lines that
+	 * changed.
+	 */
+	public long getFlagsNanos() {
+		return flagsNanos;
+	}
+
+	/**
+	 * Time spent on the word ranges for the number of tokens, if not yet known.
+	 */
+	public long getWordRangeNanos() {
+		return wordRangeNanos;
+	}
+
+	/**
+	 * Time spent generating and ranking combos.
+	 */
+	public long getCollectNanos() {
+		return collectNanos;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	/**
+	 * Words from the filtered dictionary looked at by the scan, or the
+	 * dictionary graph edges followed by the move generator.
+	 */
+	public long getExaminedCount() {
+		return examinedCount;
+	}
+
+	/**
+	 * Words, lengths and start cells skipped, or branches cut, because their
+	 * score bound cannot reach the results kept.
+	 */
+	public long getBoundRejectCount() {
+		return boundRejectCount;
+	}
+
+	/**
+	 * Words or letters that do not fit the cross checks of a cell.
+	 */
+	public long getCrossCheckRejectCount() {
+		return crossCheckRejectCount;
+	}
+
+	/**
+	 * Letters the move generator has no token left for; the scan leaves these
+	 * out when filtering the dictionary.
+	 */
+	public long getRackRejectCount() {
+		return rackRejectCount;
+	}
+
+	/**
+	 * Combos scored and offered to the result.
+	 */
+	public long getOfferedCount() {
+		return offeredCount;
+	}
+
+	/**
+	 * Offered combos the result took, some of which may have been pushed out
+	 * again by better ones.
+	 */
+	public long getAdmittedCount() {
+		return admittedCount;
+	}
+
+	public long getFilterHitCount() {
+		return filterHitCount;
+	}
+
+	public long getFilterMissCount() {
+		return filterMissCount;
+	}
+
+	/**
+	 * Whether the result came from the result cache, as a count.
+	 */
+	public long getResultCacheHitCount() {
+		return resultCacheHitCount;
+	}
+
+	public long getResultCacheMissCount() {
+		return resultCacheMissCount;
+	}
+
+	public int getResultCount() {
+		return resultCount;
+	}
+
+	/**
+	 * Adds the counts and timings of a part of the same solve.
+	 */
+	void add(SolveMetrics other) {
+		creditCacheNanos += other.creditCacheNanos;
+		flagsNanos += other.flagsNanos;
+		wordRangeNanos += other.wordRangeNanos;
+		collectNanos += other.collectNanos;
+		examinedCount += other.examinedCount;
+		boundRejectCount += other.boundRejectCount;
+		crossCheckRejectCount += other.crossCheckRejectCount;
+		rackRejectCount += other.rackRejectCount;
+		offeredCount += other.offeredCount;
+		admittedCount += other.admittedCount;
+		filterHitCount += other.filterHitCount;
+		filterMissCount += other.filterMissCount;
+		resultCacheHitCount += other.resultCacheHitCount;
+		resultCacheMissCount += other.resultCacheMissCount;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SolveMetrics(total:%dus credit-cache:%dus flags:%dus word-range:%dus collect:%dus "
+				+ "examined:%d bound-rejects:%d cross-check-rejects:%d rack-rejects:%d offered:%d admitted:%d "
+				+ "filter-hits:%d filter-misses:%d result-cache-hits:%d result-cache-misses:%d results:%d)",
+				Long.valueOf(totalNanos / 1000),
+				Long.valueOf(creditCacheNanos / 1000), Long.valueOf(flagsNanos / 1000),
+				Long.valueOf(wordRangeNanos / 1000), Long.valueOf(collectNanos / 1000),
+				Long.valueOf(examinedCount), Long.valueOf(boundRejectCount), Long.valueOf(crossCheckRejectCount),
+				Long.valueOf(rackRejectCount), Long.valueOf(offeredCount), Long.valueOf(admittedCount),
+				Long.valueOf(filterHitCount), Long.valueOf(filterMissCount), Long.valueOf(resultCacheHitCount),
+				Long.valueOf(resultCacheMissCount), Integer.valueOf(resultCount));
+	}
+}
@@ -0,0 +1,20 @@
+package net.sf.scrabble.core;
+
+import java.util.Set;
+
+/**
+ * Follows a solve as it works through the lines of the board, and can cancel
+ * it.
+ */
+public interface SolveMonitor {
+	/**
+	 * Called after each line with the best combos found so far, best first.
+	 */
+	void lineDone(int doneCount, int lineCount, Set<Combo> comboSet);
+
+	/**
+	 * Checked before each line; once true, the solve stops with a
+	 * CancellationException.
+	 */
+	boolean isCancelled();
+}
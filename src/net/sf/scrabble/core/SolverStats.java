@@ -0,0 +1,206 @@
+package net.sf.scrabble.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of all solves in the process added up, with a histogram of
+ * solve latencies in power of two buckets of nanoseconds. Recording a solve
+ * is a handful of atomic additions, so it is always on; {@link #register()}
+ * makes the totals available over JMX.
+ */
+public class SolverStats implements SolverStatsMBean {
+	public static final String OBJECT_NAME = "net.sf.scrabble:type=SolverStats";
+	private static final SolverStats instance = new SolverStats();
+	private AtomicLong solveCount = new AtomicLong();
+	private AtomicLong creditCacheNanos = new AtomicLong();
+	private AtomicLong flagsNanos = new AtomicLong();
+	private AtomicLong wordRangeNanos = new AtomicLong();
+	private AtomicLong collectNanos = new AtomicLong();
+	private AtomicLong totalNanos = new AtomicLong();
+	private AtomicLong examinedCount = new AtomicLong();
+	private AtomicLong boundRejectCount = new AtomicLong();
+	private AtomicLong crossCheckRejectCount = new AtomicLong();
+	private AtomicLong rackRejectCount = new AtomicLong();
+	private AtomicLong offeredCount = new AtomicLong();
+	private AtomicLong admittedCount = new AtomicLong();
+	private AtomicLong filterHitCount = new AtomicLong();
+	private AtomicLong filterMissCount = new AtomicLong();
+	private AtomicLong resultCacheHitCount = new AtomicLong();
+	private AtomicLong resultCacheMissCount = new AtomicLong();
+	// solves per bucket, bucket i counting latencies below 2^i nanoseconds
+	private AtomicLongArray latencyArray = new AtomicLongArray(64);
+
+	public static SolverStats getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Registers the totals with the platform MBean server, once.
+	 */
+	public static void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(instance, new ObjectName(OBJECT_NAME));
+		} catch (InstanceAlreadyExistsException e) {
+			// registered before
+		}
+	}
+
+	public void record(SolveMetrics metrics) {
+		solveCount.incrementAndGet();
+		creditCacheNanos.addAndGet(metrics.creditCacheNanos);
+		flagsNanos.addAndGet(metrics.flagsNanos);
+		wordRangeNanos.addAndGet(metrics.wordRangeNanos);
+		collectNanos.addAndGet(metrics.collectNanos);
+		totalNanos.addAndGet(metrics.totalNanos);
+		examinedCount.addAndGet(metrics.examinedCount);
+		boundRejectCount.addAndGet(metrics.boundRejectCount);
+		crossCheckRejectCount.addAndGet(metrics.crossCheckRejectCount);
+		rackRejectCount.addAndGet(metrics.rackRejectCount);
+		offeredCount.addAndGet(metrics.offeredCount);
+		admittedCount.addAndGet(metrics.admittedCount);
+		filterHitCount.addAndGet(metrics.filterHitCount);
+		filterMissCount.addAndGet(metrics.filterMissCount);
+		resultCacheHitCount.addAndGet(metrics.resultCacheHitCount);
+		resultCacheMissCount.addAndGet(metrics.resultCacheMissCount);
+		latencyArray.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(metrics.totalNanos, 0)));
+	}
+
+	public long getSolveCount() {
+		return solveCount.get();
+	}
+
+	public long getCreditCacheNanos() {
+		return creditCacheNanos.get();
+	}
+
+	public long getFlagsNanos() {
+		return flagsNanos.get();
+	}
+
+	public long getWordRangeNanos() {
+		return wordRangeNanos.get();
+	}
+
+	public long getCollectNanos() {
+		return collectNanos.get();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	public long getExaminedCount() {
+		return examinedCount.get();
+	}
+
+	public long getBoundRejectCount() {
+		return boundRejectCount.get();
+	}
+
+	public long getCrossCheckRejectCount() {
+		return crossCheckRejectCount.get();
+	}
+
+	public long getRackRejectCount() {
+		return rackRejectCount.get();
+	}
+
+	public long getOfferedCount() {
+		return offeredCount.get();
+	}
+
+	public long getAdmittedCount() {
+		return admittedCount.get();
+	}
+
+	public long getFilterHitCount() {
+		return filterHitCount.get();
+	}
+
+	public long getFilterMissCount() {
+		return filterMissCount.get();
+	}
+
+	public long getResultCacheHitCount() {
+		return resultCacheHitCount.get();
+	}
+
+	public long getResultCacheMissCount() {
+		return resultCacheMissCount.get();
+	}
+
+	/**
+	 * The share of solves with a result cache that found their result there.
+	 */
+	public double getResultCacheHitRatio() {
+		long hits = resultCacheHitCount.get();
+		long count = hits + resultCacheMissCount.get();
+		return count == 0 ? 0 : (double) hits / count;
+	}
+
+	public long getLatencyP50Micros() {
+		return getLatencyPercentile(50) / 1000;
+	}
+
+	public long getLatencyP90Micros() {
+		return getLatencyPercentile(90) / 1000;
+	}
+
+	public long getLatencyP99Micros() {
+		return getLatencyPercentile(99) / 1000;
+	}
+
+	public long getLatencyMaxMicros() {
+		return getLatencyPercentile(100) / 1000;
+	}
+
+	/**
+	 * The upper end of the bucket holding the given percentile of solve
+	 * latencies, in nanoseconds; at most twice the actual latency.
+	 */
+	public long getLatencyPercentile(double percentile) {
+		long[] countArray = new long[latencyArray.length()];
+		long count = 0;
+		for (int i = 0; i < countArray.length; i++) {
+			countArray[i] = latencyArray.get(i);
+			count += countArray[i];
+		}
+		long rank = (long) Math.ceil(percentile / 100 * count);
+		long seen = 0;
+		for (int i = 0; i < countArray.length; i++) {
+			seen += countArray[i];
+			if (seen >= rank && countArray[i] > 0) {
+				return i == 63 ? Long.MAX_VALUE : 1L << i;
+			}
+		}
+		return 0;
+	}
+
+	public void reset() {
+		for (AtomicLong counter : new AtomicLong[] { solveCount, creditCacheNanos, flagsNanos, wordRangeNanos,
+				collectNanos, totalNanos, examinedCount, boundRejectCount, crossCheckRejectCount, rackRejectCount,
+				offeredCount, admittedCount, filterHitCount, filterMissCount, resultCacheHitCount,
+				resultCacheMissCount }) {
+			counter.set(0);
+		}
+		for (int i = 0; i < latencyArray.length(); i++) {
+			latencyArray.set(i, 0);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SolverStats(solves:%d p50:%dus p99:%dus examined:%d offered:%d admitted:%d)",
+				Long.valueOf(getSolveCount()), Long.valueOf(getLatencyP50Micros()),
+				Long.valueOf(getLatencyP99Micros()), Long.valueOf(getExaminedCount()),
+				Long.valueOf(getOfferedCount()), Long.valueOf(getAdmittedCount()));
+	}
+}
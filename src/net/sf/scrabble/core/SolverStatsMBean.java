@@ -0,0 +1,50 @@
+package net.sf.scrabble.core;
+
+/**
+ * The management interface of {@link SolverStats}.
+ */
+public interface SolverStatsMBean {
+	long getSolveCount();
+
+	long getCreditCacheNanos();
+
+	long getFlagsNanos();
+
+	long getWordRangeNanos();
+
+	long getCollectNanos();
+
+	long getTotalNanos();
+
+	long getExaminedCount();
+
+	long getBoundRejectCount();
+
+	long getCrossCheckRejectCount();
+
+	long getRackRejectCount();
+
+	long getOfferedCount();
+
+	long getAdmittedCount();
+
+	long getFilterHitCount();
+
+	long getFilterMissCount();
+
+	long getResultCacheHitCount();
+
+	long getResultCacheMissCount();
+
+	double getResultCacheHitRatio();
+
+	long getLatencyP50Micros();
+
+	long getLatencyP90Micros();
+
+	long getLatencyP99Micros();
+
+	long getLatencyMaxMicros();
+
+	void reset();
+}
@@ -0,0 +1,114 @@
+package net.sf.scrabble.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The tiles of a game that nobody holds: a count per letter value, with
+ * jokers as {@link Alphabet#JOKER_VALUE}. Tiles are kept in a flat array, so
+ * drawing one at random takes constant time.
+ */
+public class TileBag {
+	private int[] tileArray;
+	private int size;
+
+	public TileBag(int[] countArray, int jokerCount) {
+		int total = jokerCount;
+		for (int count : countArray) {
+			total += count;
+		}
+		tileArray = new int[total];
+		for (int v = 0; v < countArray.length; v++) {
+			for (int i = 0; i < countArray[v]; i++) {
+				tileArray[size++] = v;
+			}
+		}
+		for (int i = 0; i < jokerCount; i++) {
+			tileArray[size++] = Alphabet.JOKER_VALUE;
+		}
+	}
+
+	public TileBag(TileBag bag) {
+		tileArray = Arrays.copyOf(bag.tileArray, bag.size);
+		size = bag.size;
+	}
+
+	/**
+	 * Makes this bag hold the tiles of the other, reusing its array if large
+	 * enough.
+	 */
+	public void copyFrom(TileBag bag) {
+		if (tileArray.length < bag.size) {
+			tileArray = new int[bag.size];
+		}
+		System.arraycopy(bag.tileArray, 0, tileArray, 0, bag.size);
+		size = bag.size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCount(int value) {
+		int result = 0;
+		for (int i = 0; i < size; i++) {
+			if (tileArray[i] == value) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Takes out a tile of the given value, if there is one left.
+	 */
+	public boolean remove(int value) {
+		for (int i = 0; i < size; i++) {
+			if (tileArray[i] == value) {
+				tileArray[i] = tileArray[--size];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Takes out the tiles of a position: letters on the board that are out of
+	 * tiles must have been jokers.
+	 */
+	public void removeBoard(Board board) {
+		Alphabet alphabet = board.getAlphabet();
+		for (int y = 0; y < board.getHeight(); y++) {
+			for (int x = 0; x < board.getWidth(); x++) {
+				int value = alphabet.getValueForToken(board.getCode(x, y));
+				if (value >= 0 && !remove(value)) {
+					remove(Alphabet.JOKER_VALUE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes out the tokens of a rack, as far as they are left.
+	 */
+	public void removeTokens(String tokens, Alphabet alphabet) {
+		for (int i = 0; i < tokens.length(); i = tokens.offsetByCodePoints(i, 1)) {
+			remove(alphabet.getValueForToken(tokens.codePointAt(i)));
+		}
+	}
+
+	/**
+	 * Takes out a tile at random; the bag must not be empty.
+	 */
+	public int draw(Random random) {
+		int i = random.nextInt(size);
+		int result = tileArray[i];
+		tileArray[i] = tileArray[--size];
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "TileBag(size=" + size + ")";
+	}
+}
@@ -0,0 +1,130 @@
+package net.sf.scrabble.core;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A thread-safe map that evicts its least recently used entries once the
+ * weight of its values exceeds the maximum weight, counting hits, misses and
+ * evictions. Subclasses weigh the values.
+ * <p>
+ * Keys may be weak references registered with {@link #getStaleQueue()}; the
+ * entry of such a key is dropped once its referent is reclaimed.
+ */
+public abstract class WeightedCache<K, V> {
+	private Map<K, V> map = new LinkedHashMap<K, V>(16, .75f, true);
+	private long maxWeight;
+	private long weight;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private ReferenceQueue<Object> staleQueue = new ReferenceQueue<Object>();
+
+	protected WeightedCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * The weight of a value, including the overhead of its entry.
+	 */
+	protected abstract long weigh(V value);
+
+	ReferenceQueue<Object> getStaleQueue() {
+		return staleQueue;
+	}
+
+	synchronized V get(K key) {
+		expungeStale();
+		V result = map.get(key);
+		if (result == null) {
+			missCount++;
+		} else {
+			hitCount++;
+		}
+		return result;
+	}
+
+	synchronized void put(K key, V value) {
+		expungeStale();
+		V previous = map.put(key, value);
+		if (previous != null) {
+			weight -= weigh(previous);
+		}
+		weight += weigh(value);
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Entry<K, V>> iterator = map.entrySet().iterator();
+		while (weight > maxWeight && iterator.hasNext()) {
+			weight -= weigh(iterator.next().getValue());
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+	private void expungeStale() {
+		for (Reference<?> stale = staleQueue.poll(); stale != null; stale = staleQueue.poll()) {
+			V value = map.remove(stale);
+			if (value != null) {
+				weight -= weigh(value);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		map.clear();
+		weight = 0;
+	}
+
+	public synchronized long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public synchronized void setMaxWeight(long maxWeight) {
+		this.maxWeight = maxWeight;
+		evict();
+	}
+
+	public synchronized long getWeight() {
+		expungeStale();
+		return weight;
+	}
+
+	public synchronized int size() {
+		expungeStale();
+		return map.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * The share of lookups that found a value, or zero before the first.
+	 */
+	public synchronized double getHitRatio() {
+		long count = hitCount + missCount;
+		return count == 0 ? 0 : (double) hitCount / count;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%s(size:%d weight:%d/%d hits:%d misses:%d evictions:%d hit-ratio:%.3f)",
+				getClass().getSimpleName(), Integer.valueOf(map.size()), Long.valueOf(weight),
+				Long.valueOf(maxWeight), Long.valueOf(hitCount), Long.valueOf(missCount),
+				Long.valueOf(evictionCount), Double.valueOf(getHitRatio()));
+	}
+}
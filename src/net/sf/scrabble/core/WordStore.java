@@ -0,0 +1,312 @@
+package net.sf.scrabble.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Words packed into a single buffer, sorted by length and without duplicates,
+ * as laid out in a compiled dictionary image. Words are referred to by index.
+ * The buffer can be a memory mapped file, in which case words are read
+ * straight from it.
+ * <p>
+ * Layout (big endian): magic, version, alphabet size, alphabet code points,
+ * credit per letter value, max length, first word per length (max length + 2
+ * entries), word count, letter count, letter offset per word (word count + 1
+ * entries), credit per word, letter values (one byte each), and finally the
+ * CRC32 of everything before it as a long.
+ */
+class WordStore {
+	public static final int MAGIC = 0x53435244;
+	public static final int VERSION = 1;
+	private static final int MAX_VALUE = 0xff;
+	private int[] codeArray;
+	private int[] creditArray;
+	private int[] lengthStartArray;
+	private IntBuffer offsetBuffer;
+	private IntBuffer wordCreditBuffer;
+	private ByteBuffer letterBuffer;
+
+	private WordStore() {
+	}
+
+	public int size() {
+		return wordCreditBuffer.limit();
+	}
+
+	public int getAlphabetSize() {
+		return codeArray.length;
+	}
+
+	public int getMaxLength() {
+		return lengthStartArray.length - 2;
+	}
+
+	/**
+	 * Index of the first word of the given length; words of that length run up
+	 * to getLengthEnd.
+	 */
+	public int getLengthBegin(int length) {
+		if (length >= lengthStartArray.length - 1) {
+			return size();
+		}
+		return lengthStartArray[length];
+	}
+
+	public int getLengthEnd(int length) {
+		if (length >= lengthStartArray.length - 1) {
+			return size();
+		}
+		return lengthStartArray[length + 1];
+	}
+
+	public int length(int word) {
+		return offsetBuffer.get(word + 1) - offsetBuffer.get(word);
+	}
+
+	public int valueAt(int word, int i) {
+		return letterBuffer.get(offsetBuffer.get(word) + i) & MAX_VALUE;
+	}
+
+	/**
+	 * Position of the first letter of a word, for use with getValue.
+	 */
+	public int getOffset(int word) {
+		return offsetBuffer.get(word);
+	}
+
+	public int getValue(int position) {
+		return letterBuffer.get(position) & MAX_VALUE;
+	}
+
+	public int getCredit(int word) {
+		return wordCreditBuffer.get(word);
+	}
+
+	public int[] getValueArray(int word) {
+		int offset = offsetBuffer.get(word);
+		int[] result = new int[offsetBuffer.get(word + 1) - offset];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = letterBuffer.get(offset + i) & MAX_VALUE;
+		}
+		return result;
+	}
+
+	public Word createWord(int word) {
+		return new Word(getValueArray(word), getCredit(word));
+	}
+
+	public long getLetterMask(int word) {
+		long result = 0;
+		int end = offsetBuffer.get(word + 1);
+		for (int i = offsetBuffer.get(word); i < end; i++) {
+			result |= 1L << (letterBuffer.get(i) & MAX_VALUE);
+		}
+		return result;
+	}
+
+	/**
+	 * Tests whether a word can be composed out of a set of tokens. The count
+	 * array is scratch space of alphabet size, which is left all zero.
+	 */
+	public boolean canBeMadeOutOf(int word, int[] tokenArray, int jokerCount, int[] countArray) {
+		int begin = offsetBuffer.get(word);
+		int end = offsetBuffer.get(word + 1);
+		int i = begin;
+		for (; i < end; i++) {
+			int value = letterBuffer.get(i) & MAX_VALUE;
+			if (++countArray[value] > tokenArray[value]) {
+				if (--jokerCount < 0) {
+					i++;
+					break;
+				}
+			}
+		}
+		for (int j = begin; j < i; j++) {
+			countArray[letterBuffer.get(j) & MAX_VALUE] = 0;
+		}
+		return jokerCount >= 0;
+	}
+
+	/**
+	 * Checks that the store was compiled for this alphabet and scoring.
+	 */
+	public void checkCompatible(Alphabet alphabet, Scoring scoring) throws IOException {
+		if (alphabet.getSize() != codeArray.length) {
+			throw new IOException("Alphabet size " + alphabet.getSize() + " does not match image: "
+					+ codeArray.length);
+		}
+		for (int i = 0; i < codeArray.length; i++) {
+			if (alphabet.getCodeForValue(i) != codeArray[i]) {
+				throw new IOException("Alphabet differs from image at value " + i);
+			}
+			if (scoring.getCreditFor(i) != creditArray[i]) {
+				throw new IOException("Scoring differs from image at value " + i);
+			}
+		}
+	}
+
+	public static WordStore createFrom(Collection<int[]> sequences, Alphabet alphabet, Scoring scoring) {
+		List<int[]> sorted = new ArrayList<int[]>(sequences);
+		Collections.sort(sorted, new Comparator<int[]>() {
+			public int compare(int[] a, int[] b) {
+				if (a.length != b.length) {
+					return a.length - b.length;
+				}
+				for (int i = 0; i < a.length; i++) {
+					if (a[i] != b[i]) {
+						return a[i] - b[i];
+					}
+				}
+				return 0;
+			}
+		});
+		if (alphabet.getSize() > MAX_VALUE + 1) {
+			throw new RuntimeException("Alphabet too large for word store: " + alphabet.getSize());
+		}
+		WordStore result = new WordStore();
+		result.codeArray = new int[alphabet.getSize()];
+		result.creditArray = new int[alphabet.getSize()];
+		for (int i = 0; i < result.codeArray.length; i++) {
+			result.codeArray[i] = alphabet.getCodeForValue(i);
+			result.creditArray[i] = scoring.getCreditFor(i);
+		}
+		List<int[]> unique = new ArrayList<int[]>(sorted.size());
+		for (int[] sequence : sorted) {
+			if (unique.isEmpty() || !Arrays.equals(unique.get(unique.size() - 1), sequence)) {
+				unique.add(sequence);
+			}
+		}
+		sorted = unique;
+		int maxLength = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1).length;
+		int letterCount = 0;
+		for (int[] sequence : sorted) {
+			letterCount += sequence.length;
+		}
+		result.lengthStartArray = new int[maxLength + 2];
+		int[] offsetArray = new int[sorted.size() + 1];
+		int[] wordCreditArray = new int[sorted.size()];
+		byte[] letterArray = new byte[letterCount];
+		int offset = 0;
+		int length = 0;
+		for (int w = 0; w < sorted.size(); w++) {
+			int[] sequence = sorted.get(w);
+			while (length < sequence.length) {
+				length++;
+				result.lengthStartArray[length] = w;
+			}
+			offsetArray[w] = offset;
+			for (int i = 0; i < sequence.length; i++) {
+				letterArray[offset++] = (byte) sequence[i];
+				wordCreditArray[w] += result.creditArray[sequence[i]];
+			}
+		}
+		offsetArray[sorted.size()] = offset;
+		result.lengthStartArray[maxLength + 1] = sorted.size();
+		result.offsetBuffer = IntBuffer.wrap(offsetArray);
+		result.wordCreditBuffer = IntBuffer.wrap(wordCreditArray);
+		result.letterBuffer = ByteBuffer.wrap(letterArray);
+		return result;
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		int headerInts = 4 + codeArray.length * 2 + lengthStartArray.length + 2;
+		int size = headerInts * 4 + offsetBuffer.limit() * 4 + wordCreditBuffer.limit() * 4 + letterBuffer.limit();
+		ByteBuffer buffer = ByteBuffer.allocate(size + 8);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(codeArray.length);
+		for (int i = 0; i < codeArray.length; i++) {
+			buffer.putInt(codeArray[i]);
+		}
+		for (int i = 0; i < creditArray.length; i++) {
+			buffer.putInt(creditArray[i]);
+		}
+		buffer.putInt(getMaxLength());
+		for (int i = 0; i < lengthStartArray.length; i++) {
+			buffer.putInt(lengthStartArray[i]);
+		}
+		buffer.putInt(size());
+		buffer.putInt(letterBuffer.limit());
+		for (int i = 0; i < offsetBuffer.limit(); i++) {
+			buffer.putInt(offsetBuffer.get(i));
+		}
+		for (int i = 0; i < wordCreditBuffer.limit(); i++) {
+			buffer.putInt(wordCreditBuffer.get(i));
+		}
+		for (int i = 0; i < letterBuffer.limit(); i++) {
+			buffer.put(letterBuffer.get(i));
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, size);
+		buffer.putLong(crc.getValue());
+		buffer.flip();
+		WritableByteChannel channel = Channels.newChannel(out);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Wraps an image without copying, typically a mapped file.
+	 */
+	public static WordStore readFrom(ByteBuffer image) throws IOException {
+		ByteBuffer buffer = image.duplicate();
+		if (buffer.remaining() < 16) {
+			throw new IOException("Image too small: " + buffer.remaining());
+		}
+		int size = buffer.remaining() - 8;
+		CRC32 crc = new CRC32();
+		ByteBuffer body = buffer.duplicate();
+		body.limit(body.position() + size);
+		crc.update(body);
+		if (crc.getValue() != buffer.getLong(buffer.position() + size)) {
+			throw new IOException("Image checksum mismatch");
+		}
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Not a dictionary image");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported image version: " + version);
+		}
+		WordStore result = new WordStore();
+		result.codeArray = new int[buffer.getInt()];
+		result.creditArray = new int[result.codeArray.length];
+		buffer.asIntBuffer().get(result.codeArray);
+		buffer.position(buffer.position() + result.codeArray.length * 4);
+		buffer.asIntBuffer().get(result.creditArray);
+		buffer.position(buffer.position() + result.creditArray.length * 4);
+		result.lengthStartArray = new int[buffer.getInt() + 2];
+		buffer.asIntBuffer().get(result.lengthStartArray);
+		buffer.position(buffer.position() + result.lengthStartArray.length * 4);
+		int wordCount = buffer.getInt();
+		int letterCount = buffer.getInt();
+		result.offsetBuffer = slice(buffer, (wordCount + 1) * 4).asIntBuffer();
+		result.wordCreditBuffer = slice(buffer, wordCount * 4).asIntBuffer();
+		result.letterBuffer = slice(buffer, letterCount);
+		return result;
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int length) {
+		ByteBuffer result = buffer.slice();
+		result.limit(length);
+		buffer.position(buffer.position() + length);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "WordStore(#:" + size() + " letters:" + letterBuffer.limit() + ")";
+	}
+}
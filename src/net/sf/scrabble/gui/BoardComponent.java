@@ -11,7 +11,6 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
@@ -84,11 +83,6 @@ public class BoardComponent extends JPanel {
 		return s;
 	}
 
-	public Set<Combo> solveBoard(String tokens, StringBuilder report) {
-		writeBoard();
-		return board.solve(tokens.toUpperCase(), report);
-	}
-
 	public void writeBoard() {
 		for (int y = 0; y < BOARD_HEIGHT; y++) {
 			for (int x = 0; x < BOARD_WIDTH; x++) {
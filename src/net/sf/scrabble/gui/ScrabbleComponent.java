@@ -6,6 +6,8 @@ import java.awt.Font;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -13,7 +15,10 @@ import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.BoxLayout;
 import javax.swing.DefaultListModel;
@@ -21,9 +26,11 @@ import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingWorker;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
@@ -31,6 +38,7 @@ import net.sf.scrabble.core.Alphabet;
 import net.sf.scrabble.core.Board;
 import net.sf.scrabble.core.Combo;
 import net.sf.scrabble.core.Coord;
+import net.sf.scrabble.core.SolveMonitor;
 import net.sf.scrabble.local.MaximaFactory;
 import net.sf.scrabble.local.ScrabbleFactory;
 
@@ -41,6 +49,9 @@ public class ScrabbleComponent extends JPanel {
 	private JList comboList;
 	private JTextField tokenField;
 	private JLabel statusLabel;
+	private JButton cancelButton;
+	private JProgressBar progressBar;
+	private SolveWorker solveWorker;
 	private ScrabbleFactory scrabbleFactory = new MaximaFactory();
 	private Alphabet alphabet;
 	private Board board;
@@ -64,11 +75,104 @@ public class ScrabbleComponent extends JPanel {
 		}
 	}
 
+	/**
+	 * Solves off the event dispatch thread, showing the best combos so far
+	 * after each line of the board.
+	 */
+	private class SolveWorker extends SwingWorker<Set<Combo>, Set<Combo>> implements SolveMonitor {
+		private String tokens;
+		private StringBuilder report = new StringBuilder();
+
+		public SolveWorker(String tokens) {
+			this.tokens = tokens;
+		}
+
+		@Override
+		protected Set<Combo> doInBackground() {
+			return board.solve(tokens, report, this);
+		}
+
+		public void lineDone(int doneCount, int lineCount, Set<Combo> comboSet) {
+			setProgress(doneCount * 100 / lineCount);
+			publish(comboSet);
+		}
+
+		@Override
+		protected void process(List<Set<Combo>> chunks) {
+			if (!isCancelled()) {
+				showCombos(chunks.get(chunks.size() - 1));
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (solveWorker != this) {
+				// replaced by a newer solve, which reports for itself
+				return;
+			}
+			solveWorker = null;
+			cancelButton.setEnabled(false);
+			progressBar.setValue(0);
+			try {
+				Set<Combo> comboSet = get();
+				showCombos(comboSet);
+				System.out.println(report);
+				statusLabel.setText("Search done, " + comboSet.size() + " results");
+			} catch (CancellationException ex) {
+				statusLabel.setText("Search cancelled");
+			} catch (InterruptedException ex) {
+				statusLabel.setText("Search cancelled");
+			} catch (ExecutionException ex) {
+				statusLabel.setText("ERROR: " + ex.getCause());
+				ex.getCause().printStackTrace();
+			}
+		}
+	}
+
 	public ScrabbleComponent() {
 		initComponents();
 		statusLabel.setText("Startup complete");
 	}
 
+	private void showCombos(Set<Combo> comboSet) {
+		DefaultListModel listModel = (DefaultListModel) comboList.getModel();
+		listModel.removeAllElements();
+		for (Combo tuple : comboSet) {
+			listModel.addElement(new ComboEntry(tuple));
+		}
+	}
+
+	/**
+	 * Starts solving the board for the tokens in the background, cancelling the
+	 * solve still running, if any.
+	 */
+	private void startSolve() {
+		if (solveWorker != null) {
+			solveWorker.cancel(true);
+		}
+		try {
+			// the board is read here; the solve works on a snapshot of it
+			boardComponent.writeBoard();
+			solveWorker = new SolveWorker(tokenField.getText().toUpperCase());
+			solveWorker.addPropertyChangeListener(new PropertyChangeListener() {
+				public void propertyChange(PropertyChangeEvent e) {
+					if ("progress".equals(e.getPropertyName()) && e.getSource() == solveWorker) {
+						progressBar.setValue(((Integer) e.getNewValue()).intValue());
+					}
+				}
+			});
+			progressBar.setValue(0);
+			cancelButton.setEnabled(true);
+			statusLabel.setText("Searching..");
+			solveWorker.execute();
+		} catch (Exception ex) {
+			solveWorker = null;
+			cancelButton.setEnabled(false);
+			statusLabel.setText("ERROR: " + ex);
+			ex.printStackTrace();
+		}
+	}
+
 	private void updateInfo(Coord coord) {
 		StringBuilder builder = new StringBuilder();
 		builder.append(boardComponent.getBoard().info(coord));
@@ -147,26 +251,28 @@ public class ScrabbleComponent extends JPanel {
 		JButton refreshButton = new JButton("Refresh");
 		refreshButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
-				try {
-					StringBuilder report = new StringBuilder();
-					Set<Combo> comboSet = boardComponent.solveBoard(tokenField.getText().toLowerCase(), report);
-					DefaultListModel listModel = (DefaultListModel) comboList.getModel();
-					listModel.removeAllElements();
-					for (Combo tuple : comboSet) {
-						listModel.addElement(new ComboEntry(tuple));
-					}
-					System.out.println(report);
-					statusLabel.setText("Search done, " + comboSet.size() + " results");
-				} catch (Exception ex) {
-					statusLabel.setText("ERROR: " + ex);
-					ex.printStackTrace();
+				startSolve();
+			}
+		});
+		cancelButton = new JButton("Cancel");
+		cancelButton.setEnabled(false);
+		cancelButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (solveWorker != null) {
+					solveWorker.cancel(true);
 				}
 			}
 		});
+		JPanel buttonPanel = new JPanel();
+		buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.X_AXIS));
+		buttonPanel.add(refreshButton);
+		buttonPanel.add(cancelButton);
 		tokenField = new JTextField();
+		progressBar = new JProgressBar(0, 100);
 		JPanel applyPanel = new JPanel(new BorderLayout());
-		applyPanel.add(refreshButton, BorderLayout.NORTH);
-		applyPanel.add(tokenField, BorderLayout.SOUTH);
+		applyPanel.add(buttonPanel, BorderLayout.NORTH);
+		applyPanel.add(tokenField, BorderLayout.CENTER);
+		applyPanel.add(progressBar, BorderLayout.SOUTH);
 		comboList = new JList(new DefaultListModel());
 		comboList.setFont(new Font("monospaced", Font.PLAIN, 11));
 		comboList.addListSelectionListener(new ListSelectionListener() {
@@ -0,0 +1,199 @@
+package net.sf.scrabble.headless;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.scrabble.core.Board;
+import net.sf.scrabble.core.Combo;
+import net.sf.scrabble.core.SolveMetrics;
+import net.sf.scrabble.core.SolverStats;
+
+/**
+ * Solves batches of positions without a user interface. Jobs are read from a
+ * manifest file, or from standard input, one per line:
+ *
+ * <pre>
+ * board-file  rack  [locale]
+ * </pre>
+ *
+ * separated by tabs, or by spaces if the line has no tabs. Board files are in
+ * the text format of the user interface and are resolved against the
+ * directory of the manifest. Empty lines and lines starting with # are
+ * skipped.
+ * <p>
+ * Each job is written to standard output as a line of JSON as soon as it is
+ * solved, so lines come in order of completion and carry the line number of
+ * their job. Throughput and latency percentiles go to standard error at the
+ * end.
+ */
+public class BatchSolver {
+	public static final int DEFAULT_RESULTS = 10;
+	public static final String DEFAULT_LOCALE = "en";
+	private static final int JOBS_PER_THREAD = 4;
+	private LocaleRegistry registry;
+	private int maxResults;
+	private PrintStream out;
+	private LatencyStats stats = new LatencyStats();
+	private AtomicInteger failureCount = new AtomicInteger();
+	private long elapsedNanos;
+
+	public BatchSolver(LocaleRegistry registry, int maxResults, PrintStream out) {
+		this.registry = registry;
+		this.maxResults = maxResults;
+		this.out = out;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int maxResults = DEFAULT_RESULTS;
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		String locale = DEFAULT_LOCALE;
+		LocaleRegistry registry = new LocaleRegistry();
+		String manifest = "-";
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-k") && i + 1 < args.length) {
+				maxResults = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-threads") && i + 1 < args.length) {
+				threadCount = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-locale") && i + 1 < args.length) {
+				locale = args[++i];
+			} else if (args[i].equals("-generator") && i + 1 < args.length) {
+				registry.setGeneratorType(Board.GeneratorType.valueOf(args[++i].toUpperCase()));
+			} else if (args[i].startsWith("-") && args[i].length() > 1) {
+				System.err.println("usage: BatchSolver [-k results] [-threads n] [-locale name] "
+						+ "[-generator SCAN|DAWG] [manifest|-]");
+				System.exit(1);
+			} else {
+				manifest = args[i];
+			}
+		}
+		BufferedReader in;
+		File baseDir;
+		if (manifest.equals("-")) {
+			in = new BufferedReader(new InputStreamReader(System.in, BoardText.ENCODING));
+			baseDir = new File(".");
+		} else {
+			File file = new File(manifest);
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), BoardText.ENCODING));
+			baseDir = file.getAbsoluteFile().getParentFile();
+		}
+		SolverStats.register();
+		long start = System.nanoTime();
+		registry.getTemplate(locale);
+		System.err.println("loaded " + locale + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+		BatchSolver solver = new BatchSolver(registry, maxResults, System.out);
+		try {
+			solver.run(in, baseDir, locale, threadCount);
+		} finally {
+			in.close();
+		}
+		System.out.flush();
+		System.err.println(solver.getSummary());
+	}
+
+	/**
+	 * Solves the jobs read on a pool of threads, with a bounded number of jobs
+	 * read ahead, and returns when all are written.
+	 */
+	public void run(BufferedReader in, final File baseDir, final String defaultLocale, int threadCount)
+			throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		final Semaphore semaphore = new Semaphore(threadCount * JOBS_PER_THREAD);
+		long start = System.nanoTime();
+		try {
+			int lineNumber = 0;
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				lineNumber++;
+				final String job = line.trim();
+				if (job.length() == 0 || job.startsWith("#")) {
+					continue;
+				}
+				final int id = lineNumber;
+				semaphore.acquire();
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							out(solve(id, job, baseDir, defaultLocale));
+						} finally {
+							semaphore.release();
+						}
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			elapsedNanos = System.nanoTime() - start;
+		}
+	}
+
+	private String solve(int id, String job, File baseDir, String defaultLocale) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("{\"job\":").append(id).append(',');
+		try {
+			String[] fields = job.split(job.indexOf('\t') >= 0 ? "\t" : " +");
+			if (fields.length < 2) {
+				throw new IllegalArgumentException("Expected board file and rack: " + job);
+			}
+			File file = new File(fields[0].trim());
+			if (!file.isAbsolute()) {
+				file = new File(baseDir, file.getPath());
+			}
+			String rack = fields[1].trim().toUpperCase();
+			String locale = fields.length > 2 ? fields[2].trim() : defaultLocale;
+			builder.append("\"board\":");
+			Json.appendString(builder, fields[0].trim()).append(",\"rack\":");
+			Json.appendString(builder, rack).append(",\"locale\":");
+			Json.appendString(builder, locale).append(',');
+			String content = BoardText.read(file);
+			Board board = registry.getBoard(locale);
+			board.setMaxNumberOfResults(maxResults);
+			long start = System.nanoTime();
+			BoardText.apply(content, board);
+			Set<Combo> comboSet = board.solve(rack, new SolveMetrics(), null);
+			long nanos = System.nanoTime() - start;
+			stats.record(nanos);
+			builder.append("\"micros\":").append(nanos / 1000).append(",\"results\":");
+			Json.appendCombos(builder, comboSet, board.getAlphabet());
+		} catch (Exception e) {
+			failureCount.incrementAndGet();
+			builder.append("\"error\":");
+			Json.appendString(builder, e.toString());
+		}
+		return builder.append('}').toString();
+	}
+
+	private void out(String line) {
+		synchronized (out) {
+			out.println(line);
+		}
+	}
+
+	public LatencyStats getStats() {
+		return stats;
+	}
+
+	public int getFailureCount() {
+		return failureCount.get();
+	}
+
+	/**
+	 * Jobs solved and failed, throughput over the wall clock time of the last
+	 * run, and latency percentiles.
+	 */
+	public String getSummary() {
+		long count = stats.getCount();
+		double seconds = elapsedNanos / 1e9;
+		return String.format("solved %d positions (%d failed) in %.2fs: %.1f positions/s, latency %s",
+				Long.valueOf(count), Integer.valueOf(getFailureCount()), Double.valueOf(seconds),
+				Double.valueOf(seconds > 0 ? count / seconds : 0), stats);
+	}
+}
@@ -0,0 +1,73 @@
+package net.sf.scrabble.headless;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import net.sf.scrabble.core.Alphabet;
+import net.sf.scrabble.core.Board;
+
+/**
+ * The text format boards are saved in by the user interface: a line per row,
+ * a character per cell, and a space for an empty cell. Short lines and
+ * missing rows are taken as empty.
+ */
+public class BoardText {
+	public static final String ENCODING = "UTF-8";
+
+	public static String read(File file) throws IOException {
+		return read(new InputStreamReader(new FileInputStream(file), ENCODING));
+	}
+
+	public static String read(Reader reader) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		try {
+			StringBuilder builder = new StringBuilder();
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				builder.append(line);
+				builder.append("\n");
+			}
+			return builder.toString();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Sets every cell of the board to the content; only cells that differ from
+	 * the current position invalidate cached analysis.
+	 */
+	public static void apply(String content, Board board) {
+		check(content, board);
+		Alphabet alphabet = board.getAlphabet();
+		String[] lines = content.split("\r?\n");
+		for (int y = 0; y < board.getHeight(); y++) {
+			String line = y < lines.length ? lines[y] : "";
+			for (int x = 0; x < board.getWidth(); x++) {
+				board.setCode(x, y, x < line.length() ? Character.toUpperCase(line.charAt(x)) : alphabet.getEmptyCode());
+			}
+		}
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if the content has a letter outside
+	 * the alphabet of the board within its size, without changing the board.
+	 */
+	public static void check(String content, Board board) {
+		Alphabet alphabet = board.getAlphabet();
+		String[] lines = content.split("\r?\n");
+		for (int y = 0; y < board.getHeight() && y < lines.length; y++) {
+			String line = lines[y];
+			for (int x = 0; x < board.getWidth() && x < line.length(); x++) {
+				int code = Character.toUpperCase(line.charAt(x));
+				if (!alphabet.isLegalToken(code)) {
+					throw new IllegalArgumentException("Illegal letter '" + (char) code + "' at " + (x + 1) + ","
+							+ (y + 1));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package net.sf.scrabble.headless;
+
+import java.util.Collection;
+
+import net.sf.scrabble.core.Alphabet;
+import net.sf.scrabble.core.Combo;
+import net.sf.scrabble.core.Coord;
+
+/**
+ * Just enough JSON writing for solver output.
+ */
+public class Json {
+	public static StringBuilder appendString(StringBuilder builder, String s) {
+		builder.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					builder.append(String.format("\\u%04x", Integer.valueOf(c)));
+				} else {
+					builder.append(c);
+				}
+			}
+		}
+		return builder.append('"');
+	}
+
+	/**
+	 * Combos as an array of objects with word, zero-based x and y of the first
+	 * letter, orientation (H or V) and credits, in the given order.
+	 */
+	public static StringBuilder appendCombos(StringBuilder builder, Collection<Combo> combos, Alphabet alphabet) {
+		builder.append('[');
+		boolean first = true;
+		for (Combo combo : combos) {
+			if (!first) {
+				builder.append(',');
+			}
+			first = false;
+			Coord coord = combo.getCoord();
+			builder.append("{\"word\":");
+			appendString(builder, combo.getString(alphabet));
+			builder.append(",\"x\":").append(coord.x);
+			builder.append(",\"y\":").append(coord.y);
+			builder.append(",\"orientation\":\"").append(combo.isHorizontal() ? 'H' : 'V');
+			builder.append("\",\"credits\":").append(combo.getCredits()).append('}');
+		}
+		return builder.append(']');
+	}
+}
@@ -0,0 +1,71 @@
+package net.sf.scrabble.headless;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of solved jobs. Percentiles are taken over the most recent
+ * samples, up to the capacity, so that a long-running process keeps a fixed
+ * footprint.
+ */
+public class LatencyStats {
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	private long[] sampleArray;
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+
+	public LatencyStats() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LatencyStats(int capacity) {
+		sampleArray = new long[capacity];
+	}
+
+	public synchronized void record(long nanos) {
+		sampleArray[(int) (count % sampleArray.length)] = nanos;
+		count++;
+		totalNanos += nanos;
+		maxNanos = Math.max(maxNanos, nanos);
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public synchronized long getMeanNanos() {
+		return count == 0 ? 0 : totalNanos / count;
+	}
+
+	/**
+	 * The nearest-rank percentiles (0 to 100) of the kept samples, in
+	 * nanoseconds; all zero if nothing was recorded.
+	 */
+	public long[] getPercentiles(double... percentiles) {
+		long[] sorted;
+		synchronized (this) {
+			sorted = Arrays.copyOf(sampleArray, (int) Math.min(count, sampleArray.length));
+		}
+		Arrays.sort(sorted);
+		long[] result = new long[percentiles.length];
+		for (int i = 0; i < percentiles.length && sorted.length > 0; i++) {
+			int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length);
+			result[i] = sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+		}
+		return result;
+	}
+
+	/**
+	 * Summary in milliseconds: p50, p90, p99 and max.
+	 */
+	@Override
+	public String toString() {
+		long[] p = getPercentiles(50, 90, 99);
+		return String.format("p50 %.2fms  p90 %.2fms  p99 %.2fms  max %.2fms", Double.valueOf(p[0] / 1e6),
+				Double.valueOf(p[1] / 1e6), Double.valueOf(p[2] / 1e6), Double.valueOf(getMaxNanos() / 1e6));
+	}
+}
@@ -0,0 +1,151 @@
+package net.sf.scrabble.headless;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.scrabble.core.Board;
+import net.sf.scrabble.core.ResultCache;
+import net.sf.scrabble.local.DictionaryRegistry;
+import net.sf.scrabble.local.LatinFactory;
+import net.sf.scrabble.local.ScrabbleFactory;
+
+/**
+ * The locales a headless solver can be asked for, each loaded once on first
+ * use: one alphabet and scoring per locale, and a dictionary from the
+ * {@link DictionaryRegistry}, shared by all threads. Each job sets up a
+ * position of its own, so each thread gets boards of its own on top of the
+ * shared dictionaries.
+ * <p>
+ * Templates and boards are only held softly, like the dictionaries, so a
+ * locale nobody asks for can be reclaimed when memory runs low, to be loaded
+ * again on its next request.
+ */
+public class LocaleRegistry {
+	private static final Map<String, String> factoryMap = new HashMap<String, String>();
+	static {
+		factoryMap.put("en", "EnglishFactory");
+		factoryMap.put("nl", "DutchFactory");
+		factoryMap.put("de", "GermanFactory");
+		factoryMap.put("maxima", "MaximaFactory");
+	}
+	private Map<String, SoftReference<Board>> templateMap = new HashMap<String, SoftReference<Board>>();
+	private Board.GeneratorType generatorType = Board.GeneratorType.DAWG;
+	private volatile ResultCache resultCache;
+	private ThreadLocal<Map<String, SoftReference<Board>>> boardMap =
+			new ThreadLocal<Map<String, SoftReference<Board>>>() {
+				@Override
+				protected Map<String, SoftReference<Board>> initialValue() {
+					return new HashMap<String, SoftReference<Board>>();
+				}
+			};
+
+	public Board.GeneratorType getGeneratorType() {
+		return generatorType;
+	}
+
+	public void setGeneratorType(Board.GeneratorType generatorType) {
+		this.generatorType = generatorType;
+	}
+
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Sets the cache the boards of all threads share their results through,
+	 * or null for none.
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * The board a locale was loaded with, which holds its dictionary, alphabet
+	 * and scoring, prepared for the generator type. A locale is a short name
+	 * (en, nl, de, maxima) or the name of a factory class. Loading does not
+	 * hold up threads asking for other locales.
+	 */
+	public Board getTemplate(String locale) {
+		synchronized (this) {
+			Board loaded = get(templateMap, locale);
+			if (loaded != null) {
+				return loaded;
+			}
+		}
+		ScrabbleFactory factory = createFactory(locale);
+		Board result = factory.createBoard();
+		if (result.getDictionary() == null) {
+			throw new IllegalStateException("Unable to load dictionary for locale: " + locale);
+		}
+		result.setGeneratorType(generatorType);
+		result.prepare();
+		synchronized (this) {
+			// another thread may have loaded it meanwhile
+			Board loaded = get(templateMap, locale);
+			if (loaded != null) {
+				return loaded;
+			}
+			templateMap.put(locale, new SoftReference<Board>(result));
+		}
+		return result;
+	}
+
+	private static Board get(Map<String, SoftReference<Board>> map, String locale) {
+		SoftReference<Board> reference = map.get(locale);
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * Starts loading the dictionary of a locale in the background, so several
+	 * locales can load at the same time before their templates are asked for.
+	 */
+	public void preload(String locale) {
+		ScrabbleFactory factory = createFactory(locale);
+		if (factory instanceof LatinFactory) {
+			((LatinFactory) factory).preloadDictionary();
+		}
+	}
+
+	private static ScrabbleFactory createFactory(String locale) {
+		String name = factoryMap.containsKey(locale) ? factoryMap.get(locale) : locale;
+		String className = name.indexOf('.') < 0 ? "net.sf.scrabble.local." + name : name;
+		try {
+			return (ScrabbleFactory) Class.forName(className).newInstance();
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Unknown locale: " + locale, e);
+		}
+	}
+
+	/**
+	 * A board of the locale owned by the calling thread, left as the previous
+	 * job of this thread left it unless it was reclaimed since.
+	 */
+	public Board getBoard(String locale) {
+		Board template = getTemplate(locale);
+		Map<String, SoftReference<Board>> map = boardMap.get();
+		Board result = get(map, locale);
+		// a board that outlived a reloaded template would keep a second copy
+		if (result == null || result.getDictionary() != template.getDictionary()) {
+			result = new Board(template.getWidth(), template.getHeight(), template.getDictionary(),
+					template.getAlphabet(), template.getScoring());
+			map.put(locale, new SoftReference<Board>(result));
+		}
+		result.setGeneratorType(generatorType);
+		result.setResultCache(resultCache);
+		return result;
+	}
+
+	/**
+	 * The names of the locales loaded so far, sorted, including those
+	 * reclaimed since.
+	 */
+	public synchronized List<String> getLocales() {
+		List<String> result = new ArrayList<String>(templateMap.keySet());
+		Collections.sort(result);
+		return result;
+	}
+}
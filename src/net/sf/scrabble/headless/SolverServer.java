@@ -0,0 +1,449 @@
+package net.sf.scrabble.headless;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.scrabble.core.Alphabet;
+import net.sf.scrabble.core.Board;
+import net.sf.scrabble.core.Combo;
+import net.sf.scrabble.core.Dictionary;
+import net.sf.scrabble.core.FilterCache;
+import net.sf.scrabble.core.ResultCache;
+import net.sf.scrabble.core.SolveMetrics;
+import net.sf.scrabble.core.SolverStats;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A long-running solver on localhost, answering over HTTP from dictionaries
+ * loaded once per locale.
+ * <ul>
+ * <li>POST /solve?rack=AEINRST&amp;locale=en&amp;k=10 with the board in the
+ * text format of the user interface as body; answers the ranked combos as
+ * JSON.</li>
+ * <li>GET /health answers the loaded locales.</li>
+ * <li>GET /metrics answers request counts, latency percentiles and cache hit
+ * ratios.</li>
+ * </ul>
+ * Only the locales loaded before the server starts are served; others get
+ * 400. Solves run on a fixed pool of threads. Requests beyond the pool and
+ * its queue are turned away with 503 right away, before their body is read,
+ * and requests that take longer than the timeout get 504; a solve that timed
+ * out still holds its place until it finishes. Bodies over
+ * {@link #MAX_BODY_BYTES} get 413.
+ * <p>
+ * Results are kept in a cache shared by all solver threads, keyed by the hash
+ * of the position, the rack and k, so a repeated request skips the solve.
+ */
+public class SolverServer {
+	public static final int DEFAULT_PORT = 8733;
+	public static final int DEFAULT_QUEUE = 64;
+	public static final long DEFAULT_TIMEOUT = 10000;
+	public static final int MAX_RESULTS = 1000;
+	public static final int MAX_RACK_LENGTH = 16;
+	public static final int MAX_BODY_BYTES = 1 << 16;
+	// handler threads beyond the admitted requests, for health, metrics and rejections
+	private static final int SPARE_HANDLERS = 4;
+	private static final String JSON_TYPE = "application/json; charset=utf-8";
+	private LocaleRegistry registry;
+	private String defaultLocale;
+	private Set<String> localeSet;
+	private long timeoutMillis;
+	private int handlerCount;
+	private ExecutorService handlerExecutor;
+	private ExecutorService solverExecutor;
+	private Semaphore admission;
+	private HttpServer server;
+	private long startMillis;
+	private LatencyStats stats = new LatencyStats();
+	private AtomicLong requestCount = new AtomicLong();
+	private AtomicLong rejectedCount = new AtomicLong();
+	private AtomicLong timeoutCount = new AtomicLong();
+	private AtomicLong failureCount = new AtomicLong();
+
+	public SolverServer(LocaleRegistry registry, String defaultLocale, int threadCount, int queueSize,
+			long timeoutMillis) {
+		this.registry = registry;
+		this.defaultLocale = defaultLocale;
+		this.timeoutMillis = timeoutMillis;
+		localeSet = new HashSet<String>(registry.getLocales());
+		handlerCount = threadCount + queueSize + SPARE_HANDLERS;
+		solverExecutor = Executors.newFixedThreadPool(threadCount);
+		admission = new Semaphore(threadCount + queueSize);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = DEFAULT_PORT;
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		int queueSize = DEFAULT_QUEUE;
+		long timeoutMillis = DEFAULT_TIMEOUT;
+		long cacheWeight = ResultCache.DEFAULT_MAX_WEIGHT;
+		String locales = BatchSolver.DEFAULT_LOCALE;
+		LocaleRegistry registry = new LocaleRegistry();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-port") && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-threads") && i + 1 < args.length) {
+				threadCount = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-queue") && i + 1 < args.length) {
+				queueSize = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-timeout") && i + 1 < args.length) {
+				timeoutMillis = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-cache") && i + 1 < args.length) {
+				cacheWeight = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-locales") && i + 1 < args.length) {
+				locales = args[++i];
+			} else if (args[i].equals("-generator") && i + 1 < args.length) {
+				registry.setGeneratorType(Board.GeneratorType.valueOf(args[++i].toUpperCase()));
+			} else {
+				System.err.println("usage: SolverServer [-port n] [-threads n] [-queue n] [-timeout ms] "
+						+ "[-cache combos] [-locales en,nl,...] [-generator SCAN|DAWG]");
+				System.exit(1);
+			}
+		}
+		if (cacheWeight > 0) {
+			ResultCache resultCache = new ResultCache();
+			resultCache.setMaxWeight(cacheWeight);
+			registry.setResultCache(resultCache);
+		}
+		SolverStats.register();
+		String[] localeArray = locales.split(",");
+		for (String locale : localeArray) {
+			registry.preload(locale.trim());
+		}
+		for (String locale : localeArray) {
+			long start = System.nanoTime();
+			registry.getTemplate(locale.trim());
+			System.err.println("loaded " + locale.trim() + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+		}
+		SolverServer solverServer = new SolverServer(registry, localeArray[0].trim(), threadCount, queueSize,
+				timeoutMillis);
+		solverServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		System.err.println("listening on " + solverServer.getAddress());
+	}
+
+	public void start(InetSocketAddress address) throws IOException {
+		server = HttpServer.create(address, 0);
+		server.createContext("/solve", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleSolve(exchange);
+			}
+		});
+		server.createContext("/health", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 200, getHealth());
+			}
+		});
+		server.createContext("/metrics", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 200, getMetrics());
+			}
+		});
+		// handlers only wait for solves; admission bounds the actual work
+		handlerExecutor = Executors.newFixedThreadPool(handlerCount);
+		server.setExecutor(handlerExecutor);
+		startMillis = System.currentTimeMillis();
+		server.start();
+	}
+
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	public void stop() {
+		server.stop(0);
+		handlerExecutor.shutdownNow();
+		solverExecutor.shutdownNow();
+	}
+
+	private void handleSolve(HttpExchange exchange) throws IOException {
+		requestCount.incrementAndGet();
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			failureCount.incrementAndGet();
+			send(exchange, 405, error("Use POST with the board as body"));
+			return;
+		}
+		Map<String, String> paramMap = parseQuery(exchange.getRequestURI().getRawQuery());
+		final String rack = paramMap.get("rack");
+		final String locale = paramMap.containsKey("locale") ? paramMap.get("locale") : defaultLocale;
+		if (!localeSet.contains(locale)) {
+			failureCount.incrementAndGet();
+			send(exchange, 400, error("Unknown locale, expected one of " + registry.getLocales()));
+			return;
+		}
+		final int maxResults;
+		try {
+			maxResults = paramMap.containsKey("k") ? Integer.parseInt(paramMap.get("k")) : BatchSolver.DEFAULT_RESULTS;
+		} catch (NumberFormatException e) {
+			failureCount.incrementAndGet();
+			send(exchange, 400, error("Illegal k: " + paramMap.get("k")));
+			return;
+		}
+		if (rack == null || rack.codePointCount(0, rack.length()) > MAX_RACK_LENGTH || maxResults < 0
+				|| maxResults > MAX_RESULTS) {
+			failureCount.incrementAndGet();
+			send(exchange, 400, error("Expected a rack of up to " + MAX_RACK_LENGTH + " tokens and k up to "
+					+ MAX_RESULTS));
+			return;
+		}
+		// the locale is loaded, so this only looks up its template
+		Board template = registry.getTemplate(locale);
+		String illegal = findIllegalToken(rack.toUpperCase(), template.getAlphabet());
+		if (illegal != null) {
+			failureCount.incrementAndGet();
+			send(exchange, 400, error("Illegal token in rack: '" + illegal + "'"));
+			return;
+		}
+		if (getContentLength(exchange) > MAX_BODY_BYTES) {
+			failureCount.incrementAndGet();
+			send(exchange, 413, error("Board over " + MAX_BODY_BYTES + " bytes"));
+			return;
+		}
+		if (!admission.tryAcquire()) {
+			rejectedCount.incrementAndGet();
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			send(exchange, 503, error("Too many requests"));
+			return;
+		}
+		final String content;
+		try {
+			content = readBody(exchange);
+			if (content != null) {
+				BoardText.check(content, template);
+			}
+		} catch (IllegalArgumentException e) {
+			admission.release();
+			failureCount.incrementAndGet();
+			send(exchange, 400, error(e.getMessage()));
+			return;
+		} catch (IOException e) {
+			admission.release();
+			throw e;
+		}
+		if (content == null) {
+			admission.release();
+			failureCount.incrementAndGet();
+			send(exchange, 413, error("Board over " + MAX_BODY_BYTES + " bytes"));
+			return;
+		}
+		// whoever claims the request first gives back the permit: the solve when
+		// it starts, or the handler when it gives up before that
+		final AtomicBoolean claimed = new AtomicBoolean();
+		Future<String> future;
+		try {
+			future = solverExecutor.submit(new Callable<String>() {
+				public String call() {
+					if (!claimed.compareAndSet(false, true)) {
+						return null;
+					}
+					try {
+						return solve(content, rack, locale, maxResults);
+					} finally {
+						admission.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			admission.release();
+			rejectedCount.incrementAndGet();
+			send(exchange, 503, error("Shutting down"));
+			return;
+		}
+		try {
+			send(exchange, 200, future.get(timeoutMillis, TimeUnit.MILLISECONDS));
+		} catch (TimeoutException e) {
+			if (claimed.compareAndSet(false, true)) {
+				admission.release();
+			}
+			timeoutCount.incrementAndGet();
+			send(exchange, 504, error("Timed out after " + timeoutMillis + "ms"));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failureCount.incrementAndGet();
+			send(exchange, 500, error("Interrupted"));
+		} catch (ExecutionException e) {
+			// the request was checked up front, so this is a fault of the solver
+			e.getCause().printStackTrace();
+			failureCount.incrementAndGet();
+			send(exchange, 500, error("Unable to solve"));
+		}
+	}
+
+	/**
+	 * The first token of the rack that is neither a letter of the alphabet nor
+	 * a joker, or null if none; the empty code is legal on a board only.
+	 */
+	private static String findIllegalToken(String rack, Alphabet alphabet) {
+		for (int i = 0; i < rack.length(); i = rack.offsetByCodePoints(i, 1)) {
+			int code = rack.codePointAt(i);
+			if (code == alphabet.getEmptyCode() || !alphabet.isLegalToken(code)) {
+				return new String(Character.toChars(code));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The declared length of the body, or -1 if not declared or not a number.
+	 */
+	private static long getContentLength(HttpExchange exchange) {
+		String header = exchange.getRequestHeaders().getFirst("Content-Length");
+		try {
+			return header == null ? -1 : Long.parseLong(header.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * The body as text, or null if it is longer than {@link #MAX_BODY_BYTES};
+	 * no more than one byte beyond that is read.
+	 */
+	private static String readBody(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		byte[] buffer = new byte[MAX_BODY_BYTES + 1];
+		int length = 0;
+		while (length < buffer.length) {
+			int n = in.read(buffer, length, buffer.length - length);
+			if (n < 0) {
+				break;
+			}
+			length += n;
+		}
+		if (length > MAX_BODY_BYTES) {
+			return null;
+		}
+		return BoardText.read(new InputStreamReader(new ByteArrayInputStream(buffer, 0, length), BoardText.ENCODING));
+	}
+
+	private String solve(String content, String rack, String locale, int maxResults) {
+		Board board = registry.getBoard(locale);
+		board.setMaxNumberOfResults(maxResults);
+		long start = System.nanoTime();
+		BoardText.apply(content, board);
+		Set<Combo> comboSet = board.solve(rack.toUpperCase(), new SolveMetrics(), null);
+		long nanos = System.nanoTime() - start;
+		stats.record(nanos);
+		StringBuilder builder = new StringBuilder();
+		builder.append("{\"rack\":");
+		Json.appendString(builder, rack.toUpperCase()).append(",\"locale\":");
+		Json.appendString(builder, locale).append(",\"micros\":").append(nanos / 1000).append(",\"results\":");
+		Json.appendCombos(builder, comboSet, board.getAlphabet());
+		return builder.append('}').toString();
+	}
+
+	private String getHealth() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("{\"status\":\"ok\",\"uptimeSeconds\":").append(
+				(System.currentTimeMillis() - startMillis) / 1000);
+		builder.append(",\"locales\":[");
+		List<String> localeList = registry.getLocales();
+		for (int i = 0; i < localeList.size(); i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			Json.appendString(builder, localeList.get(i));
+		}
+		return builder.append("]}").toString();
+	}
+
+	private String getMetrics() {
+		long[] p = stats.getPercentiles(50, 90, 99);
+		FilterCache filterCache = Dictionary.getFilterCache();
+		SolverStats solverStats = SolverStats.getInstance();
+		StringBuilder builder = new StringBuilder();
+		builder.append("{\"requests\":").append(requestCount.get());
+		builder.append(",\"solved\":").append(stats.getCount());
+		builder.append(",\"rejected\":").append(rejectedCount.get());
+		builder.append(",\"timedOut\":").append(timeoutCount.get());
+		builder.append(",\"failed\":").append(failureCount.get());
+		builder.append(",\"available\":").append(admission.availablePermits());
+		builder.append(",\"latencyMicros\":{\"mean\":").append(stats.getMeanNanos() / 1000);
+		builder.append(",\"p50\":").append(p[0] / 1000);
+		builder.append(",\"p90\":").append(p[1] / 1000);
+		builder.append(",\"p99\":").append(p[2] / 1000);
+		builder.append(",\"max\":").append(stats.getMaxNanos() / 1000).append('}');
+		builder.append(",\"filterCache\":{\"size\":").append(filterCache.size());
+		builder.append(",\"hits\":").append(filterCache.getHitCount());
+		builder.append(",\"misses\":").append(filterCache.getMissCount());
+		builder.append(",\"evictions\":").append(filterCache.getEvictionCount()).append('}');
+		ResultCache resultCache = registry.getResultCache();
+		if (resultCache != null) {
+			builder.append(",\"resultCache\":{\"size\":").append(resultCache.size());
+			builder.append(",\"weight\":").append(resultCache.getWeight());
+			builder.append(",\"hits\":").append(resultCache.getHitCount());
+			builder.append(",\"misses\":").append(resultCache.getMissCount());
+			builder.append(",\"evictions\":").append(resultCache.getEvictionCount());
+			builder.append(",\"hitRatio\":").append(
+					String.format(Locale.US, "%.4f", Double.valueOf(resultCache.getHitRatio()))).append('}');
+		}
+		builder.append(",\"solver\":{\"creditCacheMicros\":").append(solverStats.getCreditCacheNanos() / 1000);
+		builder.append(",\"flagsMicros\":").append(solverStats.getFlagsNanos() / 1000);
+		builder.append(",\"wordRangeMicros\":").append(solverStats.getWordRangeNanos() / 1000);
+		builder.append(",\"collectMicros\":").append(solverStats.getCollectNanos() / 1000);
+		builder.append(",\"examined\":").append(solverStats.getExaminedCount());
+		builder.append(",\"boundRejects\":").append(solverStats.getBoundRejectCount());
+		builder.append(",\"crossCheckRejects\":").append(solverStats.getCrossCheckRejectCount());
+		builder.append(",\"rackRejects\":").append(solverStats.getRackRejectCount());
+		builder.append(",\"offered\":").append(solverStats.getOfferedCount());
+		builder.append(",\"admitted\":").append(solverStats.getAdmittedCount()).append("}}");
+		return builder.toString();
+	}
+
+	private static String error(String message) {
+		return Json.appendString(new StringBuilder("{\"error\":"), message).append('}').toString();
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> result = new HashMap<String, String>();
+		if (query == null) {
+			return result;
+		}
+		for (String pair : query.split("&")) {
+			int i = pair.indexOf('=');
+			if (i > 0) {
+				result.put(URLDecoder.decode(pair.substring(0, i), "UTF-8"),
+						URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+			}
+		}
+		return result;
+	}
+}
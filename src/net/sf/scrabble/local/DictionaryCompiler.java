@@ -0,0 +1,47 @@
+package net.sf.scrabble.local;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import net.sf.scrabble.core.Alphabet;
+import net.sf.scrabble.core.Dictionary;
+import net.sf.scrabble.core.Scoring;
+
+/**
+ * Compiles a word list into a dictionary image for the alphabet and scoring of
+ * a factory. Place the image next to the word list, named after it with the
+ * image suffix (e.g. en.dic.img), and the factory will map it instead of
+ * reading the list.
+ */
+public class DictionaryCompiler {
+	public static final String DEFAULT_ENCODING = "iso-8859-15";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.out.println("usage: DictionaryCompiler <factory> <word list> <image> [encoding]");
+			System.out.println("  e.g. DictionaryCompiler EnglishFactory en.dic en.dic" + LatinFactory.IMAGE_SUFFIX);
+			System.exit(1);
+		}
+		String className = args[0].indexOf('.') < 0 ? "net.sf.scrabble.local." + args[0] : args[0];
+		LatinFactory factory = (LatinFactory) Class.forName(className).newInstance();
+		String encoding = args.length > 3 ? args[3] : DEFAULT_ENCODING;
+		Alphabet alphabet = factory.createAlphabet();
+		Scoring scoring = factory.createScoring();
+		long start = System.currentTimeMillis();
+		Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[1]), encoding));
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(args[2]));
+		try {
+			Dictionary.compile(reader, alphabet, scoring, out);
+		} finally {
+			reader.close();
+			out.close();
+		}
+		System.out.println("compiled " + args[1] + " into " + args[2] + " in "
+				+ (System.currentTimeMillis() - start) + "ms");
+	}
+}
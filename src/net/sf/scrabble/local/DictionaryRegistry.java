@@ -0,0 +1,186 @@
+package net.sf.scrabble.local;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import net.sf.scrabble.core.Alphabet;
+import net.sf.scrabble.core.Dictionary;
+import net.sf.scrabble.core.Scoring;
+
+/**
+ * The dictionaries of the process, each loaded once per word list, encoding,
+ * alphabet and scoring, and shared by all boards that ask for it. A dictionary
+ * is loaded on first use, by the first thread to ask for it or in the
+ * background on a preload; threads asking while it loads wait for the same
+ * load.
+ * <p>
+ * Once loaded, the registry only holds a dictionary softly: it stays while
+ * boards use it, and may be reclaimed when memory runs low after the last
+ * board of a locale is gone, to be loaded again on the next request.
+ */
+public class DictionaryRegistry {
+	private static final DictionaryRegistry instance = new DictionaryRegistry();
+	private final Map<Key, Entry> entryMap = new HashMap<Key, Entry>();
+	private final ExecutorService preloader = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread result = new Thread(r, "dictionary-preload");
+			result.setDaemon(true);
+			return result;
+		}
+	});
+	private int loadCount;
+
+	/**
+	 * What a dictionary is made from. Alphabets and scorings are compared by
+	 * their codes and letter credits, the only parts a dictionary depends on,
+	 * so factories creating their own equal instances share the dictionary.
+	 */
+	public static final class Key {
+		private final String resource;
+		private final String encoding;
+		private final int[] signature;
+
+		public Key(String resource, String encoding, Alphabet alphabet, Scoring scoring) {
+			this.resource = resource;
+			this.encoding = encoding;
+			int size = alphabet.getSize();
+			signature = new int[2 * size + 2];
+			signature[0] = alphabet.getJokerCode();
+			signature[1] = alphabet.getEmptyCode();
+			for (int i = 0; i < size; i++) {
+				signature[2 + 2 * i] = alphabet.getCodeForValue(i);
+				signature[3 + 2 * i] = scoring.getCreditFor(i);
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return resource.equals(other.resource) && encoding.equalsIgnoreCase(other.encoding)
+					&& Arrays.equals(signature, other.signature);
+		}
+
+		@Override
+		public int hashCode() {
+			return (resource.hashCode() * 31 + encoding.toLowerCase().hashCode()) * 31 + Arrays.hashCode(signature);
+		}
+
+		@Override
+		public String toString() {
+			return resource + " (" + encoding + ")";
+		}
+	}
+
+	// a load in progress, or the dictionary it produced
+	private static class Entry {
+		FutureTask<Dictionary> task;
+		SoftReference<Dictionary> reference;
+	}
+
+	public static DictionaryRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * The dictionary for the key, read by the given reader if not loaded yet.
+	 * Returns null if the reader does; a failed load is not kept, so the next
+	 * request tries again.
+	 */
+	public Dictionary get(Key key, Callable<Dictionary> reader) {
+		Entry entry;
+		FutureTask<Dictionary> task;
+		boolean isOwner = false;
+		synchronized (this) {
+			entry = entryMap.get(key);
+			if (entry == null) {
+				entry = new Entry();
+				entryMap.put(key, entry);
+			}
+			Dictionary loaded = entry.reference == null ? null : entry.reference.get();
+			if (loaded != null) {
+				return loaded;
+			}
+			if (entry.task == null) {
+				entry.task = new FutureTask<Dictionary>(reader);
+				entry.reference = null;
+				isOwner = true;
+			}
+			task = entry.task;
+		}
+		if (isOwner) {
+			task.run();
+		}
+		Dictionary result;
+		try {
+			result = task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			result = null;
+		}
+		if (isOwner) {
+			synchronized (this) {
+				if (result == null) {
+					if (entryMap.get(key) == entry) {
+						entryMap.remove(key);
+					}
+				} else {
+					entry.reference = new SoftReference<Dictionary>(result);
+					loadCount++;
+				}
+				entry.task = null;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Runs the given load on a background thread, typically a factory creating
+	 * its dictionary, so a later request finds it loaded or on its way.
+	 */
+	public void preload(Runnable load) {
+		preloader.execute(load);
+	}
+
+	/**
+	 * Whether the dictionary for the key is loaded and still held.
+	 */
+	public synchronized boolean isLoaded(Key key) {
+		Entry entry = entryMap.get(key);
+		return entry != null && entry.reference != null && entry.reference.get() != null;
+	}
+
+	/**
+	 * The number of dictionaries loaded since the start of the process,
+	 * counting reloads of reclaimed ones.
+	 */
+	public synchronized int getLoadCount() {
+		return loadCount;
+	}
+
+	/**
+	 * Forgets all loaded dictionaries; boards keep the ones they have. Loads
+	 * in progress are left to finish.
+	 */
+	public synchronized void clear() {
+		for (Iterator<Entry> i = entryMap.values().iterator(); i.hasNext();) {
+			if (i.next().task == null) {
+				i.remove();
+			}
+		}
+	}
+}
@@ -1,15 +1,11 @@
 package net.sf.scrabble.local;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import net.sf.scrabble.core.Alphabet;
 import net.sf.scrabble.core.Board;
 import net.sf.scrabble.core.Coord;
 import net.sf.scrabble.core.Dictionary;
 import net.sf.scrabble.core.Scoring;
+import net.sf.scrabble.core.TileBag;
 
 public class GermanFactory extends LatinFactory {
 	public static final String DEFAULT_DICTIONARY_FILE = "de.dic";
@@ -17,6 +13,9 @@ public class GermanFactory extends LatinFactory {
 	public static final int DEFAULT_WIDTH = 15;
 	public static final int DEFAULT_HEIGHT = 15;
 	private static final int DEFAULT_BONUS_FOR_USING_ALL = 50;
+	private static final int DEFAULT_JOKER_COUNT = 2;
+	private static final int[] DEFAULT_TILE_ARRAY = new int[] { 5, 2, 2, 4, 15, 2, 3, 4, 6, 1, 2, 3, 4, 9, 3, 1, 1, 6,
+			7, 6, 6, 1, 1, 1, 1, 1, 1, 1, 1 };
 	private static final int[] DEFAULT_CREDIT_ARRAY = new int[] { 1, 3, 4, 1, 1, 4, 2, 2, 1, 6, 4, 2, 3, 1, 2, 4, 10,
 			1, 1, 1, 1, 6, 3, 8, 10, 3, 6, 8, 6 };
 	private final static int[][] DEFAULT_BONUS_MATRIX = new int[][] {
@@ -56,15 +55,12 @@ public class GermanFactory extends LatinFactory {
 		return result;
 	}
 
+	public TileBag createTileBag() {
+		return new TileBag(DEFAULT_TILE_ARRAY, DEFAULT_JOKER_COUNT);
+	}
+
 	public Dictionary createDictionary(Alphabet alphabet, Scoring scoring) {
-		try {
-			InputStream stream = getClass().getResourceAsStream(DEFAULT_DICTIONARY_FILE);
-			Reader reader = new BufferedReader(new InputStreamReader(stream, DEFAULT_DICTIONARY_ENCODING));
-			return Dictionary.readFrom(reader, alphabet, scoring);
-		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
-		}
+		return loadDictionary(DEFAULT_DICTIONARY_FILE, DEFAULT_DICTIONARY_ENCODING, alphabet, scoring);
 	}
 
     @Override
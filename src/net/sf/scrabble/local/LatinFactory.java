@@ -1,10 +1,23 @@
 package net.sf.scrabble.local;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.util.concurrent.Callable;
+
 import net.sf.scrabble.core.Alphabet;
+import net.sf.scrabble.core.Dictionary;
+import net.sf.scrabble.core.Scoring;
+import net.sf.scrabble.core.TileBag;
 
 public abstract class LatinFactory implements ScrabbleFactory {
 	public static final int DEFAULT_EMPTY_CODE = ' ';
 	public static final int DEFAULT_JOKER_CODE = '_';
+	public static final String IMAGE_SUFFIX = ".img";
 
 	public Alphabet createAlphabet() {
 		Alphabet result = new Alphabet(DEFAULT_JOKER_CODE, DEFAULT_EMPTY_CODE);
@@ -13,4 +26,63 @@ public abstract class LatinFactory implements ScrabbleFactory {
 		}
 		return result;
 	}
+
+	public abstract Scoring createScoring();
+
+	public abstract Dictionary createDictionary(Alphabet alphabet, Scoring scoring);
+
+	/**
+	 * The tiles of a full game, for simulation.
+	 */
+	public abstract TileBag createTileBag();
+
+	/**
+	 * Starts loading the dictionary of this factory in the background, so that
+	 * a later board finds it loaded or on its way.
+	 */
+	public void preloadDictionary() {
+		DictionaryRegistry.getInstance().preload(new Runnable() {
+			public void run() {
+				createDictionary(createAlphabet(), createScoring());
+			}
+		});
+	}
+
+	/**
+	 * The dictionary for a word list next to this factory, shared with all
+	 * other boards that use the same word list, alphabet and scoring.
+	 */
+	protected Dictionary loadDictionary(final String file, final String encoding, final Alphabet alphabet,
+			final Scoring scoring) {
+		String resource = getClass().getPackage().getName().replace('.', '/') + '/' + file;
+		DictionaryRegistry.Key key = new DictionaryRegistry.Key(resource, encoding, alphabet, scoring);
+		return DictionaryRegistry.getInstance().get(key, new Callable<Dictionary>() {
+			public Dictionary call() {
+				return readDictionary(file, encoding, alphabet, scoring);
+			}
+		});
+	}
+
+	/**
+	 * Maps the compiled image next to the word list if there is one on the file
+	 * system, otherwise reads the word list itself.
+	 */
+	protected Dictionary readDictionary(String file, String encoding, Alphabet alphabet, Scoring scoring) {
+		URL image = getClass().getResource(file + IMAGE_SUFFIX);
+		if (image != null && "file".equals(image.getProtocol())) {
+			try {
+				return Dictionary.openImage(new File(image.toURI()), alphabet, scoring);
+			} catch (Exception e) {
+				System.out.println("Unable to open image, reading " + file + ": " + e);
+			}
+		}
+		try {
+			InputStream stream = getClass().getResourceAsStream(file);
+			Reader reader = new BufferedReader(new InputStreamReader(stream, encoding));
+			return Dictionary.readFrom(reader, alphabet, scoring);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
 }
@@ -1,15 +1,11 @@
 package net.sf.scrabble.local;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import net.sf.scrabble.core.Alphabet;
 import net.sf.scrabble.core.Board;
 import net.sf.scrabble.core.Coord;
 import net.sf.scrabble.core.Dictionary;
 import net.sf.scrabble.core.Scoring;
+import net.sf.scrabble.core.TileBag;
 
 public class MaximaFactory extends LatinFactory {
 	public static final String DEFAULT_DICTIONARY_FILE = "nl.dic";
@@ -17,6 +13,10 @@ public class MaximaFactory extends LatinFactory {
 	public static final int DEFAULT_WIDTH = 15;
 	public static final int DEFAULT_HEIGHT = 15;
 	private static final int DEFAULT_BONUS_FOR_USING_ALL = 50;
+	private static final int DEFAULT_JOKER_COUNT = 2;
+	// the Dutch distribution
+	private static final int[] DEFAULT_TILE_ARRAY = new int[] { 6, 2, 2, 5, 18, 2, 3, 2, 4, 2, 3, 3, 3, 10, 6, 2, 1, 5,
+			5, 5, 3, 2, 2, 1, 1, 2 };
 	private static final int[] DEFAULT_CREDIT_ARRAY = new int[] { 1, 3, 5, 2, 1, 5, 3, 3, 2, 6, 4, 4, 4, 1, 2, 5, 7,
 			2, 3, 2, 3, 4, 5, 7, 7, 5 };
 	private final static int[][] DEFAULT_BONUS_MATRIX = new int[][] {
@@ -56,15 +56,12 @@ public class MaximaFactory extends LatinFactory {
 		return result;
 	}
 
+	public TileBag createTileBag() {
+		return new TileBag(DEFAULT_TILE_ARRAY, DEFAULT_JOKER_COUNT);
+	}
+
 	public Dictionary createDictionary(Alphabet alphabet, Scoring scoring) {
-		try {
-			InputStream stream = getClass().getResourceAsStream(DEFAULT_DICTIONARY_FILE);
-			Reader reader = new BufferedReader(new InputStreamReader(stream, DEFAULT_DICTIONARY_ENCODING));
-			return Dictionary.readFrom(reader, alphabet, scoring);
-		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
-		}
+		return loadDictionary(DEFAULT_DICTIONARY_FILE, DEFAULT_DICTIONARY_ENCODING, alphabet, scoring);
 	}
 
 	public Board createBoard() {